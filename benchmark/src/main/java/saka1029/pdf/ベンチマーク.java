@@ -0,0 +1,44 @@
+package saka1029.pdf;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ITextのベンチマークを実行します。
+ * 引数にはJMHのコマンドラインオプションを指定できます。
+ * 指定しなければGCプロファイラを追加し、結果をtarget/jmh-result.jsonに書き出すので、
+ * 実行ごとの処理時間と割り当て量(gc.alloc.rate.norm)を比較できます。
+ * PDFファイルのディレクトリはシステムプロパティpdf.dirで指定します。既定値は..です。
+ */
+public class ベンチマーク {
+
+	static final String PDFディレクトリ = "pdf.dir";
+
+	static String path(String file) {
+		return Path.of(System.getProperty(PDFディレクトリ, "..")).resolve(file).toString();
+	}
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmd);
+		if (cmd.getProfilers().isEmpty())
+			builder.addProfiler(GCProfiler.class);
+		if (!cmd.getResultFormat().hasValue())
+			builder.resultFormat(ResultFormatType.JSON);
+		if (!cmd.getResult().hasValue())
+			builder.result("target/jmh-result.json");
+		// フォークしたJVMにPDFファイルのディレクトリを渡します。
+		List<String> jvmArgs = new ArrayList<>(cmd.getJvmArgsAppend().orElse(List.of()));
+		jvmArgs.add("-D" + PDFディレクトリ + "=" + Path.of(System.getProperty(PDFディレクトリ, "..")).toAbsolutePath().normalize());
+		builder.jvmArgsAppend(jvmArgs.toArray(String[]::new));
+		new Runner(builder.build()).run();
+	}
+}
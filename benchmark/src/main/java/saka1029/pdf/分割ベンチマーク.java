@@ -0,0 +1,62 @@
+package saka1029.pdf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.itextpdf.text.DocumentException;
+
+/**
+ * 様式一覧変換で作成したファイルにしたがってPDFを分割する処理を測定します。
+ * 様式一覧はSetupで横書きとして作成します。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class 分割ベンチマーク {
+
+	@Param({"0000196315-1-2.pdf", "0000196315-379-380.pdf"})
+	public String file;
+
+	Path outDir;
+	String indexFile;
+
+	@Setup
+	public void setup() throws IOException {
+		outDir = Files.createTempDirectory("benchmark");
+		indexFile = outDir.resolve("index.txt").toString();
+		new IText(true).様式一覧変換(indexFile, ベンチマーク.path(file));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(outDir)) {
+			for (Path p : files.sorted((a, b) -> b.compareTo(a)).toList())
+				Files.delete(p);
+		}
+	}
+
+	@Benchmark
+	public List<様式> ページ分割() throws IOException, DocumentException {
+		return IText.ページ分割(indexFile, outDir.toString(), outDir.resolve("form-").toString());
+	}
+}
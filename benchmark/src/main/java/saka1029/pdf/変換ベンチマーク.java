@@ -0,0 +1,63 @@
+package saka1029.pdf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PDFファイルから出力ファイルまでの変換全体を測定します。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class 変換ベンチマーク {
+
+	@Param({"kokuji.pdf", "0000196315-1-2.pdf", "0000196315-379-380.pdf"})
+	public String file;
+
+	@Param({"true", "false"})
+	public boolean horizontal;
+
+	String path;
+	IText itext;
+	Path outFile;
+
+	@Setup
+	public void setup() throws IOException {
+		path = ベンチマーク.path(file);
+		itext = new IText(horizontal);
+		outFile = Files.createTempFile("benchmark", ".txt");
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(outFile);
+	}
+
+	@Benchmark
+	public void テキスト変換() throws IOException {
+		itext.テキスト変換(outFile.toString(), path);
+	}
+
+	@Benchmark
+	public void 様式一覧変換() throws IOException {
+		itext.様式一覧変換(outFile.toString(), path);
+	}
+}
@@ -0,0 +1,108 @@
+package saka1029.pdf;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import saka1029.pdf.IText.文書属性;
+
+/**
+ * テキスト変換の各段階を1文書の全ページについて測定します。
+ * 測定対象以外の段階の結果はSetupで求めておきます。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class 段階ベンチマーク {
+
+	@Param({"kokuji.pdf", "0000196315-1-2.pdf", "0000196315-379-380.pdf"})
+	public String file;
+
+	@Param({"true", "false"})
+	public boolean horizontal;
+
+	/**
+	 * 抽出方式です。parse以外の段階の結果は抽出方式によらず同じです。
+	 */
+	@Param({"iText", "PDFBox"})
+	public String 抽出方式;
+
+	String path;
+	IText itext;
+	抽出器.文書 doc;
+	int pageSize;
+	List<要素表> pages;
+	文書属性 文書属性;
+
+	@Setup
+	public void setup() throws IOException {
+		path = ベンチマーク.path(file);
+		itext = new IText(抽出設定.builder(horizontal)
+			.抽出方式(抽出方式.equals("PDFBox") ? 抽出器.PDFBOX : 抽出器.ITEXT)
+			.build());
+		doc = itext.設定.抽出方式.開く(path, false);
+		pageSize = doc.ページ数();
+		文書統計 統計 = new 文書統計();
+		pages = itext.parse(path, 統計);
+		文書属性 = itext.文書属性(統計);
+	}
+
+	@TearDown
+	public void tearDown() {
+		doc.close();
+	}
+
+	/**
+	 * PDFのページを要素表に変換します。
+	 */
+	@Benchmark
+	public void parse(Blackhole bh) throws IOException {
+		for (int pageNo = 1; pageNo <= pageSize; ++pageNo)
+			bh.consume(itext.parse(path, doc, pageNo));
+	}
+
+	@Benchmark
+	public void 行分割(Blackhole bh) {
+		for (要素表 page : pages) {
+			page.行分割();
+			bh.consume(page.行数());
+		}
+	}
+
+	/**
+	 * 行分割済みのページから文書統計を集計して文書属性を求めます。
+	 */
+	@Benchmark
+	public 文書属性 文書属性() {
+		文書統計 統計 = new 文書統計();
+		for (要素表 page : pages)
+			統計.add(page);
+		return itext.文書属性(統計);
+	}
+
+	/**
+	 * 行分割済みのページを行の文字列に変換します(toString、addLine)。
+	 */
+	@Benchmark
+	public void 行組立(Blackhole bh) {
+		for (int i = 0; i < pageSize; ++i)
+			bh.consume(itext.ページ組版(path, i + 1, pages.get(i), 文書属性));
+	}
+}
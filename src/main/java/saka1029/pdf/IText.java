@@ -1,41 +1,43 @@
 package saka1029.pdf;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.Closeable;
-import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.Normalizer;
-import java.text.Normalizer.Form;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import com.itextpdf.awt.geom.Rectangle2D;
 import com.itextpdf.text.Document;
 import com.itextpdf.text.DocumentException;
 import com.itextpdf.text.pdf.PdfCopy;
 import com.itextpdf.text.pdf.PdfImportedPage;
 import com.itextpdf.text.pdf.PdfReader;
-import com.itextpdf.text.pdf.parser.ImageRenderInfo;
-import com.itextpdf.text.pdf.parser.PdfReaderContentParser;
-import com.itextpdf.text.pdf.parser.RenderListener;
-import com.itextpdf.text.pdf.parser.TextRenderInfo;
+import com.itextpdf.text.pdf.PdfSmartCopy;
 
 public class IText {
 
@@ -52,6 +54,16 @@ public class IText {
 	 * A4のポイントサイズ 横約8.27 × 縦約11.69 インチ 595.44 x 841.68 ポイント
 	 */
 	public static final float PAGE_WIDTH = 596F, PAGE_HEIGHT = 842F;
+	public static final Pattern 既定ルビパターン = Pattern.compile("\\p{IsHiragana}*");
+	public static final Pattern 既定ページ番号パターン = Pattern.compile("^\\s*\\S*\\s*-\\s*\\d+\\s*-\\s*$");
+	public static final Pattern 既定様式IDパターン = Pattern.compile(
+	    "\\s*\\(?("                         // group1:別紙様式3の4の5
+	    + "(?:(?:別紙)?様式|別添|別紙)\\s*"
+	    + "(\\d+)"                          // group2:3
+	    + "(?:\\s*の\\s*(\\d+))?"           // group3:4
+	    + "(?:\\s*の\\s*(\\d+))?"           // group4:5
+	    + ")\\)?"
+	    + "(?:\\s+(.*))?");                 // group5:様式名
 
 	public record Element(float x, float y, float w, float h, String text) {
 		static String i(float f) {
@@ -68,58 +80,166 @@ public class IText {
 		void element(String path, int pageNo, int lineNo, 文書属性 attr, TreeSet<Element> elements);
 	}
 
-	// オプションパラメータ
-	public String 改行文字 = 既定改行文字;
-	public Charset 出力文字セット = StandardCharsets.UTF_8;
-	public float 行併合範囲割合 = 0.6F;
-	public float ルビ割合 = 0.6F;
-	public float 行高さ規定値 = 10F;
-	public float 行間隔規定値 = 14F;
-	public float ゼロ幅左シフト = 8F;
-	public Pattern ルビパターン = Pattern.compile("\\p{IsHiragana}*");
-	public Pattern ページ番号パターン = Pattern.compile("^\\s*\\S*\\s*-\\s*\\d+\\s*-\\s*$");
-	public DebugElement debugElement = null;
-
-	// ローカルフィールド
-	public final boolean horizontal;
+	/**
+	 * オプションです。作成後は変更できないので、
+	 * 1つのITextを複数のスレッドから同時に呼び出せます。
+	 */
+	public final 抽出設定 設定;
 
 	public IText(boolean horizontal) {
-		this.horizontal = horizontal;
+		this(抽出設定.既定(horizontal));
+	}
+
+	public IText(抽出設定 設定) {
+		this.設定 = 設定;
+	}
+
+	PdfReader 開く(String path) throws IOException {
+		return 開く(path, 設定.部分読込, 設定.計測);
+	}
+
+	static PdfReader 開く(String path, boolean 部分読込) throws IOException {
+		return 部分読込 ? new PdfReader(path, null, true) : new PdfReader(path);
+	}
+
+	static PdfReader 開く(String path, boolean 部分読込, 計測 計測) throws IOException {
+		if (計測 == null)
+			return 開く(path, 部分読込);
+		long start = System.nanoTime();
+		PdfReader reader = 開く(path, 部分読込);
+		計測.開く(path, System.nanoTime() - start);
+		return reader;
+	}
+
+	/**
+	 * 抽出方式でPDFファイルを開きます。
+	 */
+	抽出器.文書 文書(String path) throws IOException {
+		long start = 計測開始();
+		抽出器.文書 doc = 設定.抽出方式.開く(path, 設定.部分読込);
+		if (設定.計測 != null)
+			設定.計測.開く(path, System.nanoTime() - start);
+		return doc;
+	}
+
+	/**
+	 * 開いているPdfReaderから抽出します。
+	 * 抽出方式がiTextでない場合はファイルを抽出方式で開き直します。
+	 * どちらの場合も返した文書は閉じる必要があります。
+	 */
+	抽出器.文書 文書(String path, PdfReader reader) throws IOException {
+		return 設定.抽出方式 == 抽出器.ITEXT ? new iText抽出器.文書(reader, false) : 文書(path);
+	}
+
+	/**
+	 * 1つの文書のページを解析して行分割します。
+	 * キャッシュを指定した場合はキャッシュを参照し、なければ解析結果を保存します。
+	 * 解析の終わったページは文書から解放します。
+	 */
+	class ページ解析器 {
+		final String path;
+		final 抽出器.文書 doc;
+		final ページキャッシュ.文書 キャッシュ文書;
+
+		ページ解析器(String path, 抽出器.文書 doc) {
+			this.path = path;
+			this.doc = doc;
+			this.キャッシュ文書 = 設定.キャッシュ == null || doc.reader() == null ? null : new ページキャッシュ.文書(doc.reader(), 設定.キャッシュオプション());
+		}
+
+		要素表 parse(int pageNo) throws IOException {
+			long start = 計測開始();
+			String key = キャッシュ文書 == null ? null : キャッシュ文書.key(pageNo);
+			要素表 page = key == null ? null : 設定.キャッシュ.get(key);
+			if (page == null) {
+				page = IText.this.parse(path, doc, pageNo);
+				if (key != null)
+					設定.キャッシュ.put(key, page);
+			}
+			doc.解放(pageNo);
+			行分割(path, pageNo, page, start);
+			return page;
+		}
+	}
+
+	long 計測開始() {
+		return 設定.計測 == null ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * 計測を指定した場合は1つのPDFファイルの読み込み時間を報告します。
+	 */
+	void 文書計測(String path, int ページ数, long start) {
+		if (設定.計測 != null)
+			設定.計測.文書(path, ページ数, System.nanoTime() - start);
+	}
+
+	/**
+	 * 解析済みのページを行分割します。
+	 * 計測を指定した場合はstartからの時間を解析時間として報告します。
+	 */
+	void 行分割(String path, int pageNo, 要素表 page, long start) {
+		if (設定.計測 == null) {
+			page.行分割();
+			return;
+		}
+		long parsed = System.nanoTime();
+		設定.計測.解析(path, pageNo, page.size(), parsed - start);
+		page.行分割();
+		設定.計測.行分割(path, pageNo, page.行数(), System.nanoTime() - parsed);
+	}
+
+	/**
+	 * 行分割済みのページを文書統計に集計します。
+	 */
+	void 集計(String path, int pageNo, 文書統計 統計, 要素表 page) {
+		if (設定.計測 == null) {
+			統計.add(page);
+			return;
+		}
+		long start = System.nanoTime();
+		統計.add(page);
+		設定.計測.統計(path, pageNo, System.nanoTime() - start);
 	}
 
 	static float round(float f) {
 		return Math.round(f);
 	}
 
-	List<Element> parse(String path, PdfReaderContentParser parser, int pageNo) throws IOException {
-		List<Element> page = new ArrayList<>();
-		parser.processContent(pageNo, new RenderListener() {
-			public void renderText(TextRenderInfo info) {
-				String text = info.getText();
-				if (text.isBlank())
-					return;
-				Rectangle2D.Float baseBox = info.getBaseline().getBoundingRectange();
-				float ascent = info.getAscentLine().getBoundingRectange().y;
-				float descent = info.getDescentLine().getBoundingRectange().y;
-				float shiftLeft = baseBox.width <= 0.9F ? ゼロ幅左シフト : 0F;
-				Element element = new Element(
-						round((horizontal ? baseBox.x : PAGE_HEIGHT - baseBox.y) - shiftLeft),
-						round(horizontal ? PAGE_HEIGHT - baseBox.y : PAGE_WIDTH - baseBox.x),
-						round(baseBox.width),
-						round(ascent - descent), text);
-				page.add(element);
-			}
+	要素表 parse(String path, 抽出器.文書 doc, int pageNo) throws IOException {
+		return parse(path, doc, pageNo, Float.MAX_VALUE);
+	}
 
-			@Override
-			public void beginTextBlock() {
+	/**
+	 * ページを解析してy座標が領域未満の要素だけを返します。
+	 * 領域はページ座標のy座標(ページ上端からではありません)で指定します。
+	 * 領域外の文字はアセントやディセントを計算せずに読み飛ばします。
+	 */
+	要素表 parse(String path, 抽出器.文書 doc, int pageNo, float 領域) throws IOException {
+		要素表 page = new 要素表();
+		doc.抽出(pageNo, new 抽出器.受取() {
+			boolean 直前シフト = false;
+
+			float y(float baseX, float baseY) {
+				return round(設定.horizontal ? PAGE_HEIGHT - baseY : PAGE_WIDTH - baseX);
 			}
 
 			@Override
-			public void endTextBlock() {
+			public boolean 対象外(float baseX, float baseY, float baseWidth) {
+				return y(baseX, baseY) >= 領域;
 			}
 
 			@Override
-			public void renderImage(ImageRenderInfo renderInfo) {
+			public void 文字列(String text, float baseX, float baseY, float baseWidth, float height) {
+				float y = y(baseX, baseY);
+				float shiftLeft = baseWidth <= 0.9F ? 設定.ゼロ幅左シフト : 0F;
+				float x = round((設定.horizontal ? baseX : PAGE_HEIGHT - baseY) - shiftLeft);
+				float w = round(baseWidth);
+				float h = round(height);
+				boolean shifted = shiftLeft != 0F;
+				if (!設定.グリフ結合 || shifted || 直前シフト || !page.連結(x, y, w, h, text))
+					page.add(x, y, w, h, text);
+				直前シフト = shifted;
 			}
 		});
 		return page;
@@ -128,178 +248,662 @@ public class IText {
 	static final Comparator<Element> 行内ソート = Comparator.comparing(Element::x)
 			.thenComparing(Comparator.comparing(Element::y).reversed());
 
-	List<TreeMap<Float, List<Element>>> 行分割(List<List<Element>> pages) {
-	    List<TreeMap<Float, List<Element>>> result = new ArrayList<>();
-	    for (List<Element> page : pages) {
-	    	TreeMap<Float, List<Element>> lines = new TreeMap<>();
-	    	result.add(lines);
-	    	for (Element e : page)
-				lines.computeIfAbsent(e.y, k -> new ArrayList<>()).add(e);
-	    }
-	    return result;
-	}
-	
 	public record 文書属性(boolean 横書き, float 左余白, float 行間隔, float 行高さ, float 行併合範囲, float ルビ高さ) {
 	}
-	
-	文書属性 文書属性(List<TreeMap<Float, List<Element>>> pages) {
-        float 左余白 = Float.MAX_VALUE;
-        Map<Float, Integer> 行間隔度数分布 = new HashMap<>();
-        Map<Float, Integer> 行高さ度数分布 = new HashMap<>();
-        for (TreeMap<Float, List<Element>> page : pages) {
-			float prevY = Float.MIN_VALUE;
-			for (Entry<Float, List<Element>> line : page.entrySet()) {
-				左余白 = Math.min(左余白, line.getValue().get(0).x);
-				float y = line.getKey();
-				if (prevY != Float.MIN_VALUE)
-					行間隔度数分布.compute(y - prevY, (k , v) -> v == null ? 1 : v + 1);
-				prevY = y;
-				for (Element e : line.getValue())
-					行高さ度数分布.compute(e.h, (k, v) -> (v == null ? 0 : v) + e.text.length());
-			}
-        }
-        if (左余白 == Float.MAX_VALUE)
-        	左余白 = 0;
-        float 行間隔 = 行間隔度数分布.entrySet().stream()
-			.max(Entry.comparingByValue())
-			.map(Entry::getKey)
-			.orElse(行間隔規定値);
-        float 行高さ = 行高さ度数分布.entrySet().stream()
-			.max(Entry.comparingByValue())
-			.map(Entry::getKey)
-			.orElse(行高さ規定値);
-        float 行併合範囲 = 行高さ * 行併合範囲割合;
-        float ルビ高 = 行高さ * ルビ割合;
-        return new 文書属性(horizontal, 左余白, 行間隔, 行高さ, 行併合範囲, ルビ高);
-	}
-
-	/**
-	 * 1行を表すElementのリストを文字列に変換します。
-	 * @param line Elementのリストを指定します。
+
+	文書属性 文書属性(文書統計 統計) {
+		float 行高さ = 統計.行高さ(設定.行高さ規定値);
+		float 行併合範囲 = 行高さ * 設定.行併合範囲割合;
+		float ルビ高 = 行高さ * 設定.ルビ割合;
+		return new 文書属性(設定.horizontal, 統計.左余白(), 統計.行間隔(設定.行間隔規定値), 行高さ, 行併合範囲, ルビ高);
+	}
+
+	文書属性 文書属性(String path, 文書統計 統計) {
+		if (設定.計測 == null)
+			return 文書属性(統計);
+		long start = System.nanoTime();
+		文書属性 文書属性 = 文書属性(統計);
+		設定.計測.文書属性(path, 文書属性, System.nanoTime() - start);
+		return 文書属性;
+	}
+
+	/**
+	 * 1行を表す要素を文字列に変換します。
+	 * @param page 要素表を指定します。
+	 * @param line 行内ソート済みの要素の番号を指定します。
+	 * @param n 要素の数を指定します。
 	 * @param leftMargin 行先頭の無視するx座標値を指定します。
 	 * @param charWidth 平均的な1文字の幅を指定します。
-	 * @return Elementを連結した文字列を返します。
+	 * @return 要素を連結した文字列を返します。
 	 */
-	String toString(TreeSet<Element> line, float leftMargin, float charWidth) {
-		StringBuilder sb = new StringBuilder();
+	String toString(要素表 page, int[] line, int n, float leftMargin, float charWidth) {
+		return toString(new StringBuilder(), page, line, n, leftMargin, charWidth);
+	}
+
+	/**
+	 * 1行を表す要素をsbに連結して文字列に変換します。
+	 * sbはページ内の行で再利用するので、最初に空にします。
+	 */
+	String toString(StringBuilder sb, 要素表 page, int[] line, int n, float leftMargin, float charWidth) {
+		sb.setLength(0);
 		float halfWidth = charWidth / 2;
 		float start = leftMargin;
-		for (Element e : line) {
-			int spaces = Math.round((e.x - start) / halfWidth);
-			for (int i = 0; i < spaces; ++i)
-				sb.append(" ");
-			sb.append(e.text);
-			start = e.x + e.w;
+		for (int i = 0; i < n; ++i) {
+			int e = line[i];
+			float x = page.x[e];
+			空白(sb, Math.round((x - start) / halfWidth));
+			sb.append(page.文字, page.文字位置[e], page.文字数(e));
+			start = x + page.w[e];
 		}
 		return sb.toString();
 	}
 	
-	void addLine(List<String> list, TreeSet<Element> sortedLine, String path, int pageNo, int lineNo, 文書属性 文書属性) {
-        if (!sortedLine.isEmpty())
-            list.add(toString(sortedLine, 文書属性.左余白, 文書属性.行高さ));
-        if (debugElement != null)
-            debugElement.element(path, pageNo, lineNo, 文書属性, sortedLine);
-        sortedLine.clear();
+	static final char[] 空白 = " ".repeat(256).toCharArray();
+
+	/**
+	 * sbにn個の空白を追加します。nが0以下の場合は何もしません。
+	 */
+	static void 空白(StringBuilder sb, int n) {
+		for (; n > 空白.length; n -= 空白.length)
+			sb.append(空白);
+		if (n > 0)
+			sb.append(空白, 0, n);
+	}
+
+	void addLine(List<String> list, StringBuilder sb, 要素表 page, int[] line, int n, String path, int pageNo, int lineNo, 文書属性 文書属性) {
+		n = page.行内ソート(line, n);
+        if (n > 0)
+            list.add(toString(sb, page, line, n, 文書属性.左余白, 文書属性.行高さ));
+        if (設定.debugElement != null)
+            設定.debugElement.element(path, pageNo, lineNo, 文書属性, page.要素集合(line, n));
+	}
+
+	/**
+	 * 全ページを解析して行分割します。
+	 * 文書統計はページを解析するたびに集計します。
+	 */
+	List<要素表> parse(String path, 文書統計 統計) throws IOException {
+		if (設定.並列度 > 1)
+			return parse並列(path, 統計);
+		List<要素表> pages = new ArrayList<>();
+		try (抽出器.文書 doc = 文書(path)) {
+			int pageSize = doc.ページ数();
+			ページ解析器 parser = new ページ解析器(path, doc);
+			for (int pageNo = 1; pageNo <= pageSize; ++pageNo) {
+				要素表 page = parser.parse(pageNo);
+				集計(path, pageNo, 統計, page);
+				pages.add(page);
+			}
+		}
+		return pages;
+	}
+
+	/**
+	 * ページをスレッドごとの文書で並列に解析します。
+	 * ページごとの文書統計はページ順に結合するので、逐次解析と同じ結果になります。
+	 */
+	List<要素表> parse並列(String path, 文書統計 統計) throws IOException {
+		long start = 計測開始();
+		スレッド別文書 shared = new スレッド別文書(設定.抽出方式, path, 設定.部分読込);
+		if (設定.計測 != null)
+			設定.計測.開く(path, System.nanoTime() - start);
+		int pageSize = shared.ページ数;
+		ThreadLocal<ページ解析器> parsers = ThreadLocal.withInitial(() -> new ページ解析器(path, shared.get()));
+		文書統計[] pageStats = new 文書統計[pageSize];
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(設定.並列度, pageSize)));
+		try {
+			List<Future<要素表>> futures = new ArrayList<>();
+			for (int pageNo = 1; pageNo <= pageSize; ++pageNo) {
+				int p = pageNo;
+				futures.add(executor.submit(() -> {
+					要素表 page = parsers.get().parse(p);
+					pageStats[p - 1] = new 文書統計();
+					集計(path, p, pageStats[p - 1], page);
+					return page;
+				}));
+			}
+			List<要素表> pages = new ArrayList<>();
+			for (Future<要素表> future : futures)
+				pages.add(get(future));
+			for (文書統計 pageStat : pageStats)
+				統計.merge(pageStat);
+			return pages;
+		} finally {
+			shutdown(executor);
+			shared.close();
+		}
+	}
+
+	/**
+	 * 1つのPDFファイルをスレッドごとに抽出器で開きます。
+	 * 抽出器の文書はスレッドセーフではないので、get()は呼び出したスレッド専用の文書を返します。
+	 * 抽出器がiTextの場合はget().reader()でスレッド専用のPdfReaderを参照できます。
+	 * 部分読込の場合は各スレッドが同じファイルを開き、
+	 * そうでない場合は一度だけ読み込んだファイルの内容を共有します。
+	 */
+	static class スレッド別文書 implements Closeable {
+		final List<抽出器.文書> docs = Collections.synchronizedList(new ArrayList<>());
+		final ThreadLocal<抽出器.文書> threadDoc;
+		final int ページ数;
+
+		スレッド別文書(抽出器 抽出器, String path, boolean 部分読込) throws IOException {
+			byte[] bytes = 部分読込 ? null : Files.readAllBytes(Path.of(path));
+			threadDoc = ThreadLocal.withInitial(() -> {
+				try {
+					抽出器.文書 doc = 部分読込 ? 抽出器.開く(path, true) : 抽出器.開く(bytes);
+					docs.add(doc);
+					return doc;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			ページ数 = get().ページ数();
+		}
+
+		抽出器.文書 get() {
+			return threadDoc.get();
+		}
+
+		@Override
+		public void close() {
+			synchronized (docs) {
+				for (抽出器.文書 doc : docs)
+					doc.close();
+			}
+		}
+	}
+
+	static void shutdown(ExecutorService executor) {
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException u)
+				throw u.getCause();
+			if (cause instanceof IOException i)
+				throw i;
+			if (cause instanceof RuntimeException r)
+				throw r;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * 行組立で使う作業領域です。
+	 * 1回の読み込みの中ではページをまたいで再利用し、
+	 * 読み込みごとに作成するのでスレッド間では共有しません。
+	 */
+	final class 組版作業域 {
+		final StringBuilder sb = new StringBuilder();
+		final Matcher ルビ照合 = 設定.ルビパターン == 既定ルビパターン ? null : 設定.ルビパターン.matcher("");
+		int[] line = new int[0];
+
+		/**
+		 * 要素数がsize以上の要素番号の配列を返します。
+		 */
+		int[] line(int size) {
+			if (line.length < size)
+				line = new int[Math.max(size, line.length * 2)];
+			return line;
+		}
+	}
+
+	/**
+	 * 1ページ分の行を文字列のリストに変換します。
+	 */
+	List<String> ページ組版(String path, int pageNo, 要素表 page, 文書属性 文書属性) {
+		return ページ組版(path, pageNo, page, 文書属性, Integer.MAX_VALUE, new 組版作業域());
+	}
+
+	List<String> ページ組版(String path, int pageNo, 要素表 page, 文書属性 文書属性, 組版作業域 作業域) {
+		return ページ組版(path, pageNo, page, 文書属性, Integer.MAX_VALUE, 作業域);
+	}
+
+	/**
+	 * 1ページ分の行を先頭から最大行数まで文字列のリストに変換します。
+	 */
+	List<String> ページ組版(String path, int pageNo, 要素表 page, 文書属性 文書属性, int 最大行数, 組版作業域 作業域) {
+		if (設定.計測 == null)
+			return 行組立(path, pageNo, page, 文書属性, 最大行数, 作業域);
+		long start = System.nanoTime();
+		List<String> lines = 行組立(path, pageNo, page, 文書属性, 最大行数, 作業域);
+		設定.計測.組版(path, pageNo, lines.size(), System.nanoTime() - start);
+		return lines;
+	}
+
+	List<String> 行組立(String path, int pageNo, 要素表 page, 文書属性 文書属性, int 最大行数, 組版作業域 作業域) {
+		List<String> linesString = new ArrayList<>();
+		float y = Float.MIN_VALUE;
+		int[] line = 作業域.line(page.size());
+		StringBuilder sb = 作業域.sb;
+		Matcher ルビ照合 = 作業域.ルビ照合;
+		int n = 0;
+		int lineNo = 0;
+		for (int k = 0, lineSize = page.行数(); k < lineSize; ++k) {
+			if (ルビ(page, k, 文書属性, ルビ照合))
+				continue;
+			float lineY = page.行y(k);
+			if (y != Float.MIN_VALUE && lineY > y + 文書属性.行併合範囲) {
+				addLine(linesString, sb, page, line, n, path, pageNo, ++lineNo, 文書属性);
+				n = 0;
+				if (linesString.size() >= 最大行数)
+					return linesString;
+			}
+			n += page.行要素(k, line, n);
+			y = lineY;
+		}
+		addLine(linesString, sb, page, line, n, path, pageNo, ++lineNo, 文書属性);
+		return linesString;
+	}
+
+	/**
+	 * 行kのすべての要素がルビであればtrueを返します。
+	 * @param matcher ルビパターンのMatcherを指定します。
+	 *        nullの場合は既定ルビパターンと同じくすべての文字がひらがなであるかを調べます。
+	 */
+	boolean ルビ(要素表 page, int k, 文書属性 文書属性, Matcher matcher) {
+		for (int i = page.行開始[k], end = page.行開始[k + 1]; i < end; ++i) {
+			int e = page.行順[i];
+			if (page.h[e] > 文書属性.ルビ高さ)
+				return false;
+			int start = page.文字位置[e], length = page.文字数(e);
+			if (matcher == null ? !ひらがな(page.文字, start, start + length)
+				: !matcher.reset(CharBuffer.wrap(page.文字, start, length)).matches())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 文字列がすべてひらがな(\p{IsHiragana})であればtrueを返します。
+	 */
+	static boolean ひらがな(char[] a, int start, int end) {
+		for (int i = start; i < end; ) {
+			int c = Character.codePointAt(a, i, end);
+			if (Character.UnicodeScript.of(c) != Character.UnicodeScript.HIRAGANA)
+				return false;
+			i += Character.charCount(c);
+		}
+		return true;
 	}
 
 	public List<List<String>> read(String path) throws IOException {
 		List<List<String>> result = new ArrayList<>();
-		List<List<Element>> elements = new ArrayList<>();
-		PdfReader reader = new PdfReader(path);
-		try (Closeable c = () -> reader.close()) {
-			int pageSize = reader.getNumberOfPages();
-			PdfReaderContentParser parser = new PdfReaderContentParser(reader);
-			for (int pageNo = 1; pageNo <= pageSize; ++pageNo)
-				elements.add(parse(path, parser, pageNo));
-		}
-		List<TreeMap<Float, List<Element>>> pageLines = 行分割(elements);
-		文書属性 文書属性 = 文書属性(pageLines);
+		文書統計 統計 = new 文書統計();
+		long start = 計測開始();
+		List<要素表> pages = parse(path, 統計);
+		文書属性 文書属性 = 文書属性(path, 統計);
 		OUT.printf("%s: %s%n", path, 文書属性);
 //		logger.info("%s: %s%n".formatted(path, 文書属性));
+		組版作業域 作業域 = new 組版作業域();
 		int pageNo = 0;
-		for (TreeMap<Float, List<Element>> lines : pageLines) {
-		    ++pageNo;
-            List<String> linesString = new ArrayList<>();
-            result.add(linesString);
-			float y = Float.MIN_VALUE;
-			TreeSet<Element> sortedLine = new TreeSet<>(行内ソート);
-			int lineNo = 0;
-			for (Entry<Float, List<Element>> line : lines.entrySet()) {
-				List<Element> lineElements = line.getValue();
-				if (lineElements.stream().allMatch(e -> e.h <= 文書属性.ルビ高さ && ルビパターン.matcher(e.text).matches()))
-					continue;
-				if (y != Float.MIN_VALUE && line.getKey() > y + 文書属性.行併合範囲)
-					addLine(linesString, sortedLine, path, pageNo, ++lineNo, 文書属性);
-				sortedLine.addAll(lineElements);
-				y = line.getKey();
+		for (要素表 page : pages)
+			result.add(ページ組版(path, ++pageNo, page, 文書属性, 作業域));
+		文書計測(path, pageNo, start);
+		return result;
+	}
+
+	/**
+	 * 指定した範囲のページのテキストを返します。
+	 * 文書属性はread(String, ページ出力)と同じく求めるので、
+	 * 文書属性テンプレートを指定した場合は範囲外のページを解析しません。
+	 * 標本ページ数を指定した場合は範囲外のページは標本だけを解析します。
+	 * どちらも指定しない場合は文書属性を求めるために全ページを解析します。
+	 * @param fromPage 最初のページ番号(1から)を指定します。
+	 * @param toPage 最後のページ番号を指定します。ページ数を超える場合は最後のページまでを返します。
+	 */
+	public List<List<String>> read(String path, int fromPage, int toPage) throws IOException {
+		if (fromPage < 1 || fromPage > toPage)
+			throw new IllegalArgumentException("ページの範囲が不正です: %d-%d".formatted(fromPage, toPage));
+		long start = 計測開始();
+		try (抽出器.文書 doc = 文書(path)) {
+			int pageSize = doc.ページ数();
+			int to = Math.min(toPage, pageSize);
+			要素表[] pages = new 要素表[Math.max(0, to - fromPage + 1)];
+			ページ解析器 parser = new ページ解析器(path, doc);
+			文書属性 文書属性 = 文書属性(path, parser, pageSize, (page, pageNo) -> {
+				if (pageNo >= fromPage && pageNo <= to)
+					pages[pageNo - fromPage] = page;
+			});
+			List<List<String>> result = new ArrayList<>();
+			組版作業域 作業域 = new 組版作業域();
+			for (int pageNo = fromPage; pageNo <= to; ++pageNo) {
+				要素表 page = pages[pageNo - fromPage];
+				pages[pageNo - fromPage] = null;
+				if (page == null)
+					page = parser.parse(pageNo);
+				result.add(ページ組版(path, pageNo, page, 文書属性, 作業域));
 			}
-			addLine(linesString, sortedLine, path, pageNo, ++lineNo, 文書属性);
+			文書計測(path, result.size(), start);
+			return result;
 		}
-		return result;
+	}
+
+	/**
+	 * 開いている文書の文書属性を求めます。
+	 * 文書属性テンプレートを指定した場合はそれを返し、
+	 * 標本ページ数を指定した場合は先頭の標本ページ数だけを解析します。
+	 * 解析したページは保持せずに解析済みページに渡します。
+	 */
+	文書属性 文書属性(String path, ページ解析器 parser, int pageSize, ObjIntConsumer<要素表> 解析済みページ) throws IOException {
+		if (設定.文書属性テンプレート != null)
+			return 設定.文書属性テンプレート;
+		文書統計 統計 = new 文書統計();
+		int sampleSize = 設定.標本ページ数 <= 0 ? pageSize : Math.min(設定.標本ページ数, pageSize);
+		for (int pageNo = 1; pageNo <= sampleSize; ++pageNo) {
+			要素表 page = parser.parse(pageNo);
+			集計(path, pageNo, 統計, page);
+			解析済みページ.accept(page, pageNo);
+		}
+		return 文書属性(path, 統計);
+	}
+
+	/**
+	 * ページ単位にテキストを受け取ります。
+	 */
+	public interface ページ出力 {
+		void page(int pageNo, List<String> lines) throws IOException;
+	}
+
+	/**
+	 * PDFを読み込んでページごとにテキストをoutputに渡します。
+	 * 文書属性テンプレート、標本ページ数、二段階解析のいずれも指定しない場合は
+	 * read(String)と同じく全ページを解析してから出力します。
+	 */
+	public void read(String path, ページ出力 output) throws IOException {
+		if (設定.文書属性テンプレート == null && 設定.標本ページ数 <= 0 && !設定.二段階解析) {
+			List<List<String>> pages = read(path);
+			for (int i = 0, pageSize = pages.size(); i < pageSize; ++i)
+				output.page(i + 1, pages.get(i));
+			return;
+		}
+		long start = 計測開始();
+		try (抽出器.文書 doc = 文書(path)) {
+			read(path, doc, output);
+			文書計測(path, doc.ページ数(), start);
+		}
+	}
+
+	/**
+	 * 開いている文書からページごとにテキストをoutputに渡します。
+	 * 文書属性テンプレート、標本ページ数、二段階解析のいずれも指定しない場合は
+	 * 全ページを解析してから出力します。並列度は使用しません。
+	 */
+	void read(String path, 抽出器.文書 doc, ページ出力 output) throws IOException {
+		int pageSize = doc.ページ数();
+		ページ解析器 parser = new ページ解析器(path, doc);
+		文書属性 文書属性 = 設定.文書属性テンプレート;
+		List<要素表> sample = new ArrayList<>();
+		if (文書属性 == null) {
+			文書統計 統計 = new 文書統計();
+			int sampleSize = 設定.二段階解析 || 設定.標本ページ数 <= 0 ? pageSize : Math.min(設定.標本ページ数, pageSize);
+			for (int pageNo = 1; pageNo <= sampleSize; ++pageNo) {
+				要素表 page = parser.parse(pageNo);
+				集計(path, pageNo, 統計, page);
+				if (!設定.二段階解析)
+					sample.add(page);
+			}
+			文書属性 = 文書属性(path, 統計);
+		}
+		OUT.printf("%s: %s%n", path, 文書属性);
+		組版作業域 作業域 = new 組版作業域();
+		int pageNo = 0;
+		for (要素表 page : sample)
+			output.page(++pageNo, ページ組版(path, pageNo, page, 文書属性, 作業域));
+		sample.clear();
+		while (++pageNo <= pageSize) {
+			要素表 page = parser.parse(pageNo);
+			output.page(pageNo, ページ組版(path, pageNo, page, 文書属性, 作業域));
+		}
+	}
+
+	/**
+	 * 出力ファイルを開きます。
+	 * 計測を指定した場合は閉じたときに書き込んだバイト数と時間を報告します。
+	 */
+	出力バッファ 出力(String outFile, Charset charset) throws IOException {
+		return new 出力バッファ(outFile, charset, 設定.計測);
 	}
 
 	public void テキスト変換(String outFile, String... inFiles) throws IOException {
-		try (PrintWriter writer = new PrintWriter(new FileWriter(outFile, 出力文字セット))) {
-			for (String path : inFiles) {
-				List<List<String>> pages = read(path);
-				for (int i = 0, pageSize = pages.size(); i < pageSize; ++i) {
-					writer.printf("# file: %s page: %d%s", Path.of(path).getFileName(), i + 1, 改行文字);
-					for (String line : pages.get(i))
-						writer.printf("%s%s", ページ番号パターン.matcher(line).replaceFirst("#$0"), 改行文字);
+		try (出力バッファ writer = 出力(outFile, 設定.出力文字セット)) {
+			if (設定.ファイル並列度 > 1 && inFiles.length > 1)
+				テキスト並行変換(writer, inFiles);
+			else
+				for (String path : inFiles)
+					テキスト変換(writer, path);
+		}
+	}
+
+	void テキスト変換(Appendable writer, String path) throws IOException {
+		read(path, テキスト出力(writer, path));
+	}
+
+	/**
+	 * 開いているPdfReaderからテキスト変換します。
+	 */
+	void テキスト変換(Appendable writer, String path, PdfReader reader) throws IOException {
+		try (抽出器.文書 doc = 文書(path, reader)) {
+			read(path, doc, テキスト出力(writer, path));
+		}
+	}
+
+	/**
+	 * ページの見出しと行を書式化せずにwriterに追加します。
+	 */
+	ページ出力 テキスト出力(Appendable writer, String path) {
+		String 見出し = "# file: " + Path.of(path).getFileName() + " page: ";
+		行分類 分類 = new 行分類(設定.ページ番号パターン, 設定.様式IDパターン);
+		return (pageNo, lines) -> {
+			writer.append(見出し).append(Integer.toString(pageNo)).append(設定.改行文字);
+			for (String line : lines)
+				writer.append(分類.ページ番号(line)).append(設定.改行文字);
+		};
+	}
+
+	/**
+	 * 入力ファイルを並行して変換し、引数の順にwriterに出力します。
+	 * 先頭のファイルの出力が終わるまで、後続のファイルはファイル並列度の数までしか変換を開始しません。
+	 */
+	void テキスト並行変換(Appendable writer, String... inFiles) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(設定.ファイル並列度, inFiles.length));
+		try {
+			Deque<Future<StringBuilder>> window = new ArrayDeque<>();
+			int next = 0;
+			while (next < inFiles.length || !window.isEmpty()) {
+				while (next < inFiles.length && window.size() < 設定.ファイル並列度) {
+					String path = inFiles[next++];
+					window.add(executor.submit(() -> {
+						StringBuilder section = new StringBuilder();
+						テキスト変換(section, path);
+						return section;
+					}));
 				}
+				writer.append(get(window.remove()));
 			}
+		} finally {
+			shutdown(executor);
 		}
 	}
 	
-	public int 様式名出現最大行 = 3;
-	public Pattern 様式IDパターン = Pattern.compile(
-	    "\\s*\\(?("                         // group1:別紙様式3の4の5
-	    + "(?:(?:別紙)?様式|別添|別紙)\\s*"
-	    + "(\\d+)"                          // group2:3
-	    + "(?:\\s*の\\s*(\\d+))?"           // group3:4
-	    + "(?:\\s*の\\s*(\\d+))?"           // group4:5
-	    + ")\\)?"
-	    + "(?:\\s+(.*))?");                 // group5:様式名
+	/**
+	 * ページの先頭行から様式IDを探して様式の一覧を作成します。
+	 */
+	class 様式検出 implements ページ出力 {
+		final List<様式> 様式一覧 = new ArrayList<>();
+		final 行分類 分類 = new 行分類(設定.ページ番号パターン, 設定.様式IDパターン);
+		String name = null, id = null, title = null;
+		int startPage = -1, lastPage = 0;
+
+		@Override
+		public void page(int pageNo, List<String> page) {
+			lastPage = pageNo;
+			for (int j = 0, maxLine = Math.min(設定.様式名出現最大行, page.size()); j < maxLine; ++j) {
+				String line = page.get(j);
+				Matcher m = 分類.様式ID(line);
+				if (m != null) {
+					if (name != null)
+						様式一覧.add(new 様式(name, id, startPage, pageNo - 1, title));
+					name = m.group(1);
+					id = m.group(2);
+					startPage = pageNo;
+					for (int k = 3; k <= 5 && m.group(k) != null; ++k)
+						id += "_" + m.group(k);
+					title = m.group(5);
+					if (title == null && j + 1 < page.size())
+						title = page.get(j + 1);
+					title = title == null ? "" : title.replaceAll("\\s+", "");
+				}
+			}
+		}
+
+		List<様式> end() {
+			if (name != null)
+				様式一覧.add(new 様式(name, id, startPage, lastPage, title));
+			return 様式一覧;
+		}
+	}
+
+	/**
+	 * ページのCropBoxの上端(縦書きの場合は右端)の要素のy座標を返します。
+	 * 抽出した座標は回転前のユーザー空間なので、回転したページも回転前の上端から測ります。
+	 * 全体を解析した場合の行の順序と同じ向きです。
+	 */
+	float ページ上端(抽出器.文書 doc, int pageNo) throws IOException {
+		抽出器.枠 枠 = doc.枠(pageNo);
+		return round(設定.horizontal ? PAGE_HEIGHT - 枠.上() : PAGE_WIDTH - 枠.右());
+	}
+
+	/**
+	 * 各ページの様式見出し領域だけを解析してページごとの先頭行をoutputに渡します。
+	 * PDFの描画順は位置の順とは限らないので、ページの解析自体は途中で打ち切らずに
+	 * 領域外の文字の計算と保持を省略します。
+	 */
+	void 様式見出し読込(String path, 抽出器.文書 doc, ページ出力 output) throws IOException {
+		int 最大行数 = 設定.様式名出現最大行 + 1;
+		List<要素表> pages = new ArrayList<>();
+		文書統計 統計 = new 文書統計();
+		int pageSize = doc.ページ数();
+		for (int pageNo = 1; pageNo <= pageSize; ++pageNo) {
+			long start = 計測開始();
+			要素表 page = parse(path, doc, pageNo, ページ上端(doc, pageNo) + 設定.様式見出し領域);
+			doc.解放(pageNo);
+			行分割(path, pageNo, page, start);
+			集計(path, pageNo, 統計, page);
+			pages.add(page);
+		}
+		文書属性 文書属性 = 設定.文書属性テンプレート != null ? 設定.文書属性テンプレート : 文書属性(path, 統計);
+		OUT.printf("%s: %s%n", path, 文書属性);
+		組版作業域 作業域 = new 組版作業域();
+		int pageNo = 0;
+		for (要素表 page : pages)
+			output.page(++pageNo, ページ組版(path, pageNo, page, 文書属性, 最大行数, 作業域));
+	}
+
+	/**
+	 * 開いているPdfReaderから様式を検出します。
+	 */
+	List<様式> 様式検出(String path, PdfReader reader) throws IOException {
+		try (抽出器.文書 doc = 文書(path, reader)) {
+			return 様式検出(path, doc);
+		}
+	}
+
+	/**
+	 * 開いている文書から様式を検出します。
+	 */
+	List<様式> 様式検出(String path, 抽出器.文書 doc) throws IOException {
+		様式検出 検出 = new 様式検出();
+		if (設定.様式見出し領域 > 0)
+			様式見出し読込(path, doc, 検出);
+		else
+			read(path, doc, 検出);
+		return 検出.end();
+	}
+
+	void 様式一覧出力(Appendable writer, String inFile, List<様式> forms) throws IOException {
+		writer.append("#file ").append(inFile).append(設定.改行文字);
+		for (様式 y : forms)
+			writer.append(y.name()).append(',').append(y.id())
+				.append(',').append(Integer.toString(y.startPage()))
+				.append(',').append(Integer.toString(y.endPage()))
+				.append(',').append(y.title()).append(設定.改行文字);
+	}
 
 	public void 様式一覧変換(String outFile, String... inFiles) throws IOException {
-	    try (PrintWriter writer = new PrintWriter(new File(outFile), 既定文字セット)) {
-            for (String inFile : inFiles) {
-                List<List<String>> pages = read(inFile);
-                writer.printf("#file %s%s", inFile, 改行文字);
-                String name = null, id = null, title = null;
-                int startPage = -1;
-                int i = 0;
-                for (int pageSize = pages.size(); i < pageSize; ++i) {
-                    List<String> page = pages.get(i);
-                    for (int j = 0, maxLine = Math.min(様式名出現最大行, page.size()); j < maxLine; ++j) {
-                        String line = page.get(j);
-                        String normalLine = Normalizer.normalize(line, Form.NFKD);
-                        Matcher m = 様式IDパターン.matcher(normalLine);
-                        if (m.matches()) {
-                        	if (name != null)
-								writer.printf("%s,%s,%d,%d,%s%s", name, id, startPage, i, title, 改行文字);
-                            name = m.group(1);
-                            id = m.group(2);
-                            startPage = i + 1;
-                            for (int k = 3; k <= 5 && m.group(k) != null; ++k)
-                                id += "_" + m.group(k);
-                            title = m.group(5);
-                            if (title == null && j + 1 < page.size())
-                                title = page.get(j + 1);
-                            title = title.replaceAll("\\s+", "");
-                        }
-                    }
-                }
-				if (name != null)
-					writer.printf("%s,%s,%d,%d,%s%s", name, id, startPage, i, title, 改行文字);
-            }
-	    }
+		try (出力バッファ writer = 出力(outFile, 既定文字セット)) {
+			for (String inFile : inFiles) {
+				List<様式> forms;
+				if (設定.様式見出し領域 > 0) {
+					long start = 計測開始();
+					try (抽出器.文書 doc = 文書(inFile)) {
+						forms = 様式検出(inFile, doc);
+						文書計測(inFile, doc.ページ数(), start);
+					}
+				} else {
+					様式検出 検出 = new 様式検出();
+					read(inFile, 検出);
+					forms = 検出.end();
+				}
+				様式一覧出力(writer, inFile, forms);
+			}
+		}
 	}
-	
+
+	/**
+	 * 様式一覧変換とページ分割を中間ファイルなしで行います。
+	 * 各PDFを一度だけ開き、同じPdfReaderで様式を検出してページを書き出します。
+	 * 分割オプションの並列度が2以上の場合、書き出しはスレッドごとのPdfReaderで行います。
+	 * @param indexFile nullでない場合は様式一覧変換と同じ形式の一覧を出力します。
+	 * @param outFilePrefix 出力ファイル名はoutFilePrefix + 様式ID + ".pdf"です。
+	 * @return すべての入力ファイルの様式をページ分割と同じ順序で返します。
+	 */
+	public List<様式> 様式分割(String indexFile, String outFilePrefix, 分割オプション option, String... inFiles) throws IOException, DocumentException {
+		List<様式> result = new ArrayList<>();
+		出力バッファ index = indexFile == null ? null : 出力(indexFile, 既定文字セット);
+		try (Closeable i = () -> { if (index != null) index.close(); }) {
+			for (String inFile : inFiles) {
+				List<様式> forms;
+				long start = 計測開始();
+				PdfReader reader = 開く(inFile, 設定.部分読込 || option.部分読込(), 設定.計測);
+				try (Closeable c = () -> reader.close()) {
+					forms = 様式検出(inFile, reader);
+					文書計測(inFile, reader.getNumberOfPages(), start);
+					if (index != null)
+						様式一覧出力(index, inFile, forms);
+					if (option.並列度() <= 1)
+						for (様式 form : forms)
+							writePages(reader, outFilePrefix + form.id() + ".pdf", form.startPage(), form.endPage(), option.スマートコピー());
+				}
+				if (option.並列度() > 1)
+					様式書出(inFile, forms, outFilePrefix, option);
+				result.addAll(forms);
+			}
+		}
+		return result;
+	}
+
 	static void writePages(PdfReader reader, String outFile, int startPage, int endPage) throws DocumentException, IOException {
+		writePages(reader, outFile, startPage, endPage, false);
+	}
+
+	static void writePages(PdfReader reader, String outFile, int startPage, int endPage, boolean スマートコピー) throws DocumentException, IOException {
 //		Document document = new Document(reader.getPageSizeWithRotation(1));
 		Document document = new Document();
-		PdfCopy writer = new PdfCopy(document, new FileOutputStream(outFile));
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile), 1 << 16);
+		PdfCopy writer = スマートコピー ? new PdfSmartCopy(document, out) : new PdfCopy(document, out);
 		try (Closeable w = () -> writer.close()) {
 			document.open();
 			try (Closeable d = () -> document.close()) {
@@ -308,19 +912,62 @@ public class IText {
 					writer.addPage(page);
 				}
 			}
+			for (int i = startPage; i <= endPage; ++i)
+				reader.releasePage(i);
 		}
 	}
-	
+
+	/**
+	 * ページ分割のオプションです。
+	 * @param 部分読込 PDFをメモリマップしてコピーするページだけを読み込みます。
+	 * @param 並列度 2以上の場合は1つのPDFから様式ごとのファイルを並行して書き出します。
+	 * @param スマートコピー trueの場合はPdfSmartCopyを使用して、
+	 *        出力ファイル内で同じ内容のフォントや画像などを1つにまとめます。
+	 */
+	public record 分割オプション(boolean 部分読込, int 並列度, boolean スマートコピー) {
+		public static final 分割オプション 既定 = new 分割オプション(false, 1, false);
+	}
+
 	public static List<様式> ページ分割(String inFile, String outDir, String outFilePrefix) throws IOException, DocumentException {
+		return ページ分割(inFile, outDir, outFilePrefix, 分割オプション.既定);
+	}
+
+	public static List<様式> ページ分割(String inFile, String outDir, String outFilePrefix, boolean 部分読込) throws IOException, DocumentException {
+		return ページ分割(inFile, outDir, outFilePrefix, new 分割オプション(部分読込, 1, false));
+	}
+
+	/**
+	 * 様式一覧変換で作成したファイルにしたがってPDFを様式ごとのファイルに分割します。
+	 */
+	public static List<様式> ページ分割(String inFile, String outDir, String outFilePrefix, 分割オプション option) throws IOException, DocumentException {
 	    List<様式> result = new ArrayList<>();
+		for (様式一覧 index : 様式一覧読込(inFile)) {
+			if (index.pdf() != null)
+				様式書出(index.pdf(), index.forms(), outFilePrefix, option);
+			result.addAll(index.forms());
+		}
+		return result;
+	}
+
+	/**
+	 * 様式一覧変換で作成したファイルの1つのPDFファイルの部分です。
+	 * 最初の#file行より前の様式はpdfがnullになります。
+	 */
+	record 様式一覧(String pdf, List<様式> forms) {
+	}
+
+	/**
+	 * 様式一覧変換で作成したファイルを読み込みます。
+	 */
+	static List<様式一覧> 様式一覧読込(String inFile) throws IOException {
+		List<様式一覧> result = new ArrayList<>();
 		try (BufferedReader reader = Files.newBufferedReader(Path.of(inFile), 既定文字セット)) {
-			PdfReader pdfReader = null;
+			List<様式> forms = null;
 			String line;
 			while ((line = reader.readLine()) != null) {
 				if (line.startsWith("#file")) {
-					if (pdfReader != null)
-						pdfReader.close();
-					pdfReader = new PdfReader(line.replaceFirst("#file\\s*", ""));
+					forms = new ArrayList<>();
+					result.add(new 様式一覧(line.replaceFirst("#file\\s*", ""), forms));
 				} else if (line.isBlank()) {
 					continue;
 				} else if (line.strip().startsWith("#")) {
@@ -329,17 +976,54 @@ public class IText {
 					String[] fields = line.split(",", 5);
 					String name = fields[0];
 					String id = fields[1];
-					String outFile = outFilePrefix + id + ".pdf";
 					String title = fields[4];
 					int startPage = Integer.parseInt(fields[2]);
 					int endPage = Integer.parseInt(fields[3]);
-					result.add(new 様式(name, id, startPage, endPage, title));
-					writePages(pdfReader, outFile, startPage, endPage);
+					if (forms == null) {
+						forms = new ArrayList<>();
+						result.add(new 様式一覧(null, forms));
+					}
+					forms.add(new 様式(name, id, startPage, endPage, title));
 				}
 			}
-			if (pdfReader != null)
-				pdfReader.close();
 		}
 		return result;
 	}
+
+	/**
+	 * 1つのPDFから様式ごとにページを書き出します。
+	 * 出力ファイル名はoutFilePrefix + 様式ID + ".pdf"です。
+	 * 並列度が2以上の場合はスレッドごとのPdfReaderで並行して書き出します。
+	 */
+	static void 様式書出(String pdf, List<様式> forms, String outFilePrefix, 分割オプション option) throws IOException, DocumentException {
+		if (option.並列度() <= 1 || forms.size() <= 1) {
+			PdfReader reader = 開く(pdf, option.部分読込());
+			try (Closeable c = () -> reader.close()) {
+				for (様式 form : forms)
+					writePages(reader, outFilePrefix + form.id() + ".pdf", form.startPage(), form.endPage(), option.スマートコピー());
+			}
+			return;
+		}
+		スレッド別文書 shared = new スレッド別文書(抽出器.ITEXT, pdf, option.部分読込());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(option.並列度(), forms.size()));
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+			for (様式 form : forms)
+				futures.add(executor.submit(() -> {
+					writePages(shared.get().reader(), outFilePrefix + form.id() + ".pdf", form.startPage(), form.endPage(), option.スマートコピー());
+					return null;
+				}));
+			for (Future<Void> future : futures)
+				try {
+					get(future);
+				} catch (IOException e) {
+					if (e.getCause() instanceof DocumentException d)
+						throw d;
+					throw e;
+				}
+		} finally {
+			shutdown(executor);
+			shared.close();
+		}
+	}
 }
@@ -0,0 +1,168 @@
+package saka1029.pdf;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import saka1029.pdf.IText.文書属性;
+
+/**
+ * 計測結果をJava Flight Recorderのイベントとして記録します。
+ * 各イベントは処理の終了時に記録し、処理時間はtimeフィールドに保持します。
+ * 記録中でないイベントはフィールドの設定も行いません。
+ */
+public class JFR計測 implements 計測 {
+
+	@Category({"saka1029.pdf"})
+	@StackTrace(false)
+	static abstract class 段階 extends Event {
+		@Label("ファイル")
+		String path;
+		@Label("時間")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+	}
+
+	@Name("saka1029.pdf.Open")
+	@Label("PDFを開く")
+	static class 開くEvent extends 段階 {
+	}
+
+	@Name("saka1029.pdf.Parse")
+	@Label("ページ解析")
+	static class 解析Event extends 段階 {
+		@Label("ページ")
+		int pageNo;
+		@Label("要素数")
+		int elements;
+	}
+
+	@Name("saka1029.pdf.Group")
+	@Label("行分割")
+	static class 行分割Event extends 段階 {
+		@Label("ページ")
+		int pageNo;
+		@Label("行数")
+		int lines;
+	}
+
+	@Name("saka1029.pdf.Statistics")
+	@Label("文書統計")
+	static class 統計Event extends 段階 {
+		@Label("ページ")
+		int pageNo;
+	}
+
+	@Name("saka1029.pdf.Attribute")
+	@Label("文書属性")
+	static class 文書属性Event extends 段階 {
+		@Label("文書属性")
+		String attribute;
+	}
+
+	@Name("saka1029.pdf.Layout")
+	@Label("組版")
+	static class 組版Event extends 段階 {
+		@Label("ページ")
+		int pageNo;
+		@Label("行数")
+		int lines;
+	}
+
+	@Name("saka1029.pdf.Write")
+	@Label("書込")
+	static class 書込Event extends 段階 {
+		@Label("バイト数")
+		@DataAmount
+		long bytes;
+	}
+
+	@Name("saka1029.pdf.Document")
+	@Label("文書")
+	static class 文書Event extends 段階 {
+		@Label("ページ数")
+		int pages;
+	}
+
+	static void commit(段階 event, String path, long nanos) {
+		event.path = path;
+		event.time = nanos;
+		event.commit();
+	}
+
+	@Override
+	public void 開く(String path, long nanos) {
+		開くEvent event = new 開くEvent();
+		if (event.isEnabled())
+			commit(event, path, nanos);
+	}
+
+	@Override
+	public void 解析(String path, int pageNo, int 要素数, long nanos) {
+		解析Event event = new 解析Event();
+		if (event.isEnabled()) {
+			event.pageNo = pageNo;
+			event.elements = 要素数;
+			commit(event, path, nanos);
+		}
+	}
+
+	@Override
+	public void 行分割(String path, int pageNo, int 行数, long nanos) {
+		行分割Event event = new 行分割Event();
+		if (event.isEnabled()) {
+			event.pageNo = pageNo;
+			event.lines = 行数;
+			commit(event, path, nanos);
+		}
+	}
+
+	@Override
+	public void 統計(String path, int pageNo, long nanos) {
+		統計Event event = new 統計Event();
+		if (event.isEnabled()) {
+			event.pageNo = pageNo;
+			commit(event, path, nanos);
+		}
+	}
+
+	@Override
+	public void 文書属性(String path, 文書属性 文書属性, long nanos) {
+		文書属性Event event = new 文書属性Event();
+		if (event.isEnabled()) {
+			event.attribute = 文書属性.toString();
+			commit(event, path, nanos);
+		}
+	}
+
+	@Override
+	public void 組版(String path, int pageNo, int 行数, long nanos) {
+		組版Event event = new 組版Event();
+		if (event.isEnabled()) {
+			event.pageNo = pageNo;
+			event.lines = 行数;
+			commit(event, path, nanos);
+		}
+	}
+
+	@Override
+	public void 書込(String outFile, long バイト数, long nanos) {
+		書込Event event = new 書込Event();
+		if (event.isEnabled()) {
+			event.bytes = バイト数;
+			commit(event, outFile, nanos);
+		}
+	}
+
+	@Override
+	public void 文書(String path, int ページ数, long nanos) {
+		文書Event event = new 文書Event();
+		if (event.isEnabled()) {
+			event.pages = ページ数;
+			commit(event, path, nanos);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package saka1029.pdf;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.graphics.state.PDTextState;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.Vector;
+
+/**
+ * PDFBoxのPDFTextStripperで抽出します。
+ * テキストの組み立ては行わず、グリフごとのTextPositionを表示する文字列(TjやTJの各文字列)ごとにまとめて、
+ * iTextのTextRenderInfoと同じ座標のベースライン、アセントライン、ディセントラインを求めます。
+ * 縦書きフォントの位置ベクトルとCropBoxの原点の移動は取り除きます。
+ * ToUnicodeのない複合フォントの文字は抽出しません。
+ */
+class PDFBox抽出器 implements 抽出器 {
+
+	/**
+	 * フォント記述子にアセントやディセントがない場合の値です(iTextと同じ)。
+	 */
+	static final float 既定アセント = 800F, 既定ディセント = -200F;
+
+	@Override
+	public 文書 開く(String path, boolean 部分読込) throws IOException {
+		return new 文書(PDDocument.load(new File(path),
+			部分読込 ? MemoryUsageSetting.setupTempFileOnly() : MemoryUsageSetting.setupMainMemoryOnly()));
+	}
+
+	@Override
+	public 文書 開く(byte[] bytes) throws IOException {
+		return new 文書(PDDocument.load(bytes));
+	}
+
+	@Override
+	public String toString() {
+		return "PDFBox";
+	}
+
+	static class 文書 implements 抽出器.文書 {
+		final PDDocument document;
+		final 抽出 stripper;
+
+		文書(PDDocument document) throws IOException {
+			this.document = document;
+			this.stripper = new 抽出();
+		}
+
+		@Override
+		public int ページ数() {
+			return document.getNumberOfPages();
+		}
+
+		@Override
+		public void 抽出(int pageNo, 受取 受取) throws IOException {
+			stripper.受取 = 受取;
+			stripper.処理済 = false;
+			try {
+				stripper.processPage(document.getPage(pageNo - 1));
+				if (!stripper.処理済)
+					throw new IllegalStateException("PDFTextStripperがページを処理しませんでした: " + pageNo);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			} finally {
+				stripper.受取 = null;
+			}
+		}
+
+		@Override
+		public 枠 枠(int pageNo) {
+			PDRectangle crop = document.getPage(pageNo - 1).getCropBox();
+			return new 枠(crop.getLowerLeftX(), crop.getLowerLeftY(), crop.getUpperRightX(), crop.getUpperRightY());
+		}
+
+		@Override
+		public void close() {
+			try {
+				document.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * processPage()でページを1つずつ処理します。
+	 * PDFTextStripper.processPage()は現在のページ番号が開始ページから終了ページまでの場合だけ処理します。
+	 * 現在のページ番号はprocessPages()がページごとに増やす非公開のフィールドで、
+	 * processPage()を直接呼び出す場合は0のままなので、開始ページと終了ページを0にします。
+	 * これはPDFBox 2.0の実装に依存するので、ページを処理しなかった場合は例外をスローします。
+	 * writeText()で1ページずつ処理するとページごとにすべてのページを走査するので使いません。
+	 */
+	static class 抽出 extends PDFTextStripper {
+		受取 受取;
+		/**
+		 * startPage()が呼び出されるとtrueになります。
+		 */
+		boolean 処理済;
+		float 原点X, 原点Y;
+		/**
+		 * 処理中の文字列です。Type3フォントのグリフの中の文字列は外側の文字列に含めます。
+		 */
+		int 深さ = 0;
+		final StringBuilder text = new StringBuilder();
+		TextPosition first, last;
+
+		抽出() throws IOException {
+			setStartPage(0);
+			setEndPage(0);
+			setShouldSeparateByBeads(false);
+		}
+
+		@Override
+		public void processPage(PDPage page) throws IOException {
+			PDRectangle crop = page.getCropBox();
+			原点X = crop.getLowerLeftX();
+			原点Y = crop.getLowerLeftY();
+			super.processPage(page);
+		}
+
+		@Override
+		protected void showText(byte[] string) throws IOException {
+			if (深さ++ > 0) {
+				super.showText(string);
+				--深さ;
+				return;
+			}
+			text.setLength(0);
+			first = last = null;
+			try {
+				super.showText(string);
+			} finally {
+				深さ = 0;
+			}
+			if (first != null)
+				try {
+					出力();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+		}
+
+		@Override
+		protected void processTextPosition(TextPosition t) {
+			if (first == null)
+				first = t;
+			last = t;
+			text.append(t.getUnicode());
+		}
+
+		@Override
+		protected void startPage(PDPage page) {
+			処理済 = true;
+		}
+
+		@Override
+		protected void writePage() {
+		}
+
+		/**
+		 * グリフの水平方向の原点を基準に、テキスト空間の(u, v)をユーザー空間に変換します。
+		 */
+		Point2D.Float 座標(TextPosition t, float u, float v) throws IOException {
+			Matrix trm = t.getTextMatrix();
+			PDFont font = t.getFont();
+			if (font.isVertical()) {
+				Vector p = font.getPositionVector(t.getCharacterCodes()[0]);
+				u -= p.getX();
+				v -= p.getY();
+			}
+			Point2D.Float point = trm.transformPoint(u, v);
+			point.x += 原点X;
+			point.y += 原点Y;
+			return point;
+		}
+
+		void 出力() throws IOException {
+			String s = text.toString();
+			if (s.isBlank())
+				return;
+			// 最後のグリフの送り幅に文字間隔(空白の場合は単語間隔も)を加えた位置がベースラインの終点です。
+			PDFont font = last.getFont();
+			int[] codes = last.getCharacterCodes();
+			int code = codes[codes.length - 1];
+			float 幅 = font.getWidth(code) * font.getFontMatrix().getScaleX();
+			PDTextState state = getGraphicsState().getTextState();
+			float 間隔 = state.getCharacterSpacing();
+			if (code == 32 && !(font instanceof PDType0Font))
+				間隔 += state.getWordSpacing();
+			float fontSize = state.getFontSize();
+			float end = 幅 + (fontSize == 0 ? 0 : 間隔 / fontSize);
+			Point2D.Float start = 座標(first, 0, 0), stop = 座標(last, end, 0);
+			float x = Math.min(start.x, stop.x), y = Math.min(start.y, stop.y), width = Math.abs(stop.x - start.x);
+			if (受取.対象外(x, y, width))
+				return;
+			PDFontDescriptor fd = first.getFont().getFontDescriptor();
+			float ascent = fd != null && fd.getCOSObject().containsKey(COSName.ASCENT) ? fd.getAscent() : 既定アセント;
+			float descent = fd != null && fd.getCOSObject().containsKey(COSName.DESCENT) ? fd.getDescent() : 既定ディセント;
+			float a = Math.min(座標(first, 0, ascent / 1000).y, 座標(last, end, ascent / 1000).y);
+			float d = Math.min(座標(first, 0, descent / 1000).y, 座標(last, end, descent / 1000).y);
+			受取.文字列(s, x, y, width, a - d);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package saka1029.pdf;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.itextpdf.awt.geom.Rectangle2D;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.DocumentFont;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.ImageRenderInfo;
+import com.itextpdf.text.pdf.parser.LineSegment;
+import com.itextpdf.text.pdf.parser.PdfReaderContentParser;
+import com.itextpdf.text.pdf.parser.RenderListener;
+import com.itextpdf.text.pdf.parser.TextRenderInfo;
+import com.itextpdf.text.pdf.parser.Vector;
+
+/**
+ * iTextのPdfReaderContentParserで抽出します。
+ * TextRenderInfoごとに1つの文字列を受取に渡します。
+ */
+public class iText抽出器 implements 抽出器 {
+
+	/**
+	 * falseの場合は高さをキャッシュせずにTextRenderInfoから毎回計算します。
+	 */
+	final boolean 高さキャッシュ;
+
+	iText抽出器(boolean 高さキャッシュ) {
+		this.高さキャッシュ = 高さキャッシュ;
+	}
+
+	@Override
+	public 文書 開く(String path, boolean 部分読込) throws IOException {
+		return new 文書(IText.開く(path, 部分読込), true, 高さキャッシュ);
+	}
+
+	@Override
+	public 文書 開く(byte[] bytes) throws IOException {
+		return new 文書(new PdfReader(bytes), true, 高さキャッシュ);
+	}
+
+	@Override
+	public String toString() {
+		return 高さキャッシュ ? "iText" : "iText(高さ計算)";
+	}
+
+	/**
+	 * 文字列の高さ(アセントラインとディセントラインのy座標の差)を求めます。
+	 * 高さは文字列の幅、ライズ、平行移動によらず
+	 * (アセント - ディセント) × 変換行列のy方向の拡大率です。
+	 * フォントが同じならアセントとディセントはフォントサイズに比例するので、
+	 * アセントラインとベースラインの始点のy座標の差(アセント × y方向の拡大率)が同じ文字列は高さも同じです。
+	 * フォントとこの差をキーにして、ディセントラインと外接矩形は最初の文字列だけで計算します。
+	 * TextRenderInfoの公開されたメソッドだけを使います。
+	 * iTextはページごとにフォントを作成するので、ページごとに作成します。
+	 * 直前の文字列と同じ場合はキャッシュも参照しません。
+	 * スレッドセーフではありません。
+	 */
+	static class 高さ計算 {
+		record 高さキー(DocumentFont font, float ascent) {
+		}
+
+		final Map<高さキー, Float> キャッシュ = new HashMap<>();
+		final boolean 有効;
+		DocumentFont font;
+		float ascent = Float.NaN, height;
+
+		/**
+		 * @param 有効 falseの場合はキャッシュしません。
+		 */
+		高さ計算(boolean 有効) {
+			this.有効 = 有効;
+		}
+
+		float height(TextRenderInfo info, LineSegment baseline) {
+			if (!有効)
+				return 計算(info);
+			DocumentFont f = info.getFont();
+			float a = info.getAscentLine().getStartPoint().get(Vector.I2) - baseline.getStartPoint().get(Vector.I2);
+			// アセントが0のフォントは差から高さが決まらない
+			if (a == 0)
+				return 計算(info);
+			if (f == font && a == ascent)
+				return height;
+			font = f;
+			ascent = a;
+			return height = キャッシュ.computeIfAbsent(new 高さキー(f, a), k -> 計算(info));
+		}
+
+		static float 計算(TextRenderInfo info) {
+			return info.getAscentLine().getBoundingRectange().y - info.getDescentLine().getBoundingRectange().y;
+		}
+	}
+
+	static class 文書 implements 抽出器.文書 {
+		final PdfReader reader;
+		final PdfReaderContentParser parser;
+		final boolean 所有;
+		final boolean 高さキャッシュ;
+
+		/**
+		 * @param 所有 trueの場合はclose()でPdfReaderを閉じます。
+		 */
+		文書(PdfReader reader, boolean 所有) {
+			this(reader, 所有, true);
+		}
+
+		文書(PdfReader reader, boolean 所有, boolean 高さキャッシュ) {
+			this.reader = reader;
+			this.parser = new PdfReaderContentParser(reader);
+			this.所有 = 所有;
+			this.高さキャッシュ = 高さキャッシュ;
+		}
+
+		@Override
+		public int ページ数() {
+			return reader.getNumberOfPages();
+		}
+
+		@Override
+		public void 抽出(int pageNo, 受取 受取) throws IOException {
+			高さ計算 高さ計算 = new 高さ計算(高さキャッシュ);
+			parser.processContent(pageNo, new RenderListener() {
+				@Override
+				public void renderText(TextRenderInfo info) {
+					String text = info.getText();
+					if (text.isBlank())
+						return;
+					LineSegment baseline = info.getBaseline();
+					Rectangle2D.Float baseBox = baseline.getBoundingRectange();
+					if (受取.対象外(baseBox.x, baseBox.y, baseBox.width))
+						return;
+					受取.文字列(text, baseBox.x, baseBox.y, baseBox.width, 高さ計算.height(info, baseline));
+				}
+
+				@Override
+				public void beginTextBlock() {
+				}
+
+				@Override
+				public void endTextBlock() {
+				}
+
+				@Override
+				public void renderImage(ImageRenderInfo renderInfo) {
+				}
+			});
+		}
+
+		@Override
+		public 枠 枠(int pageNo) {
+			Rectangle crop = reader.getCropBox(pageNo);
+			return new 枠(crop.getLeft(), crop.getBottom(), crop.getRight(), crop.getTop());
+		}
+
+		@Override
+		public void 解放(int pageNo) {
+			reader.releasePage(pageNo);
+		}
+
+		@Override
+		public PdfReader reader() {
+			return reader;
+		}
+
+		@Override
+		public void close() {
+			if (所有)
+				reader.close();
+		}
+	}
+}
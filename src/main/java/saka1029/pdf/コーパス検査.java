@@ -0,0 +1,358 @@
+package saka1029.pdf;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * PDFのコーパスをテキスト変換して、処理時間と使用メモリを計測し、出力を正解のテキストと比較します。
+ * コーパスは一括変換の定義ファイル(r0110.jsonなど)か、入力ディレクトリ以下のすべてのPDFファイルです。
+ * 定義ファイルの場合はテキスト変換と様式一覧変換を対象とし、ページ分割はテキストを出力しないので対象外です。
+ * 入力ディレクトリのPDFファイルは1つずつ横書きでテキスト変換し(縦書きパターンに一致するものは縦書き)、
+ * 出力は入力ディレクトリからの相対パスの拡張子を.txtにしたものです。
+ * 変換は1つずつ順に実行し、文書ごとに次のものを記録します。
+ * <ul>
+ * <li>処理時間とページ毎秒(反復数が2以上の場合は最も速かった回)</li>
+ * <li>呼び出したスレッドが割り当てたバイト数(ITextの並列度が2以上の場合は作業スレッドの分を含みません)</li>
+ * <li>GCの後からのヒープ使用量の最大値</li>
+ * <li>最大RSS(LinuxのVmHWM。/proc/self/clear_refsで文書ごとに戻せない場合はプロセス開始からの最大値)</li>
+ * <li>正解ディレクトリの同じ名前のファイルとの行差分</li>
+ * </ul>
+ * 基準レポートを指定すると、処理時間が基準の(1 + 許容低下率)倍を超えた文書を低下とします。
+ * 差分も低下も失敗もなければ合格です。
+ */
+public class コーパス検査 {
+
+	public final Path 入力ディレクトリ, 正解ディレクトリ, 作業ディレクトリ;
+	final 一括変換 変換;
+	public final IText 横書き, 縦書き;
+	/**
+	 * 横書きと縦書きのITextの計測です。文書ごとのページ数は検査の前後の差です。
+	 */
+	final 計測.集計 集計 = new 計測.集計();
+	/**
+	 * 入力ディレクトリのPDFファイルのうち、相対パスがこのパターンを含むものを縦書きとします。
+	 */
+	public Pattern 縦書きパターン = null;
+	public int 反復数 = 1;
+	/**
+	 * trueの場合は正解のない文書の出力を正解ディレクトリに複製します。
+	 */
+	public boolean 正解更新 = false;
+	public Path 基準レポート = null;
+	public double 許容低下率 = 0.1;
+	public int 最大編集数 = 2000;
+	/**
+	 * レポートに含める差分の行数です。
+	 */
+	public int 差分表示行数 = 20;
+
+	public コーパス検査(Path 入力ディレクトリ, Path 正解ディレクトリ, Path 作業ディレクトリ) {
+		this(入力ディレクトリ, 正解ディレクトリ, 作業ディレクトリ, 抽出設定.既定(true), 抽出設定.既定(false));
+	}
+
+	/**
+	 * 指定した抽出設定で検査します。
+	 * 抽出設定の計測は文書ごとのページ数を数える計測に置き換えます。
+	 */
+	public コーパス検査(Path 入力ディレクトリ, Path 正解ディレクトリ, Path 作業ディレクトリ, 抽出設定 横書き, 抽出設定 縦書き) {
+		this.入力ディレクトリ = 入力ディレクトリ;
+		this.正解ディレクトリ = 正解ディレクトリ;
+		this.作業ディレクトリ = 作業ディレクトリ;
+		this.変換 = new 一括変換(入力ディレクトリ, 作業ディレクトリ, 作業ディレクトリ.resolve("state.json"));
+		this.横書き = 変換.横書き = new IText(横書き.toBuilder().計測(集計).build());
+		this.縦書き = 変換.縦書き = new IText(縦書き.toBuilder().計測(集計).build());
+	}
+
+	/**
+	 * 1つの文書の結果です。
+	 * 状態は「一致」「差分」「正解なし」「更新」「失敗」のいずれかです。
+	 */
+	public static class 文書結果 {
+		public String 名前, 状態;
+		public List<String> 入力 = new ArrayList<>();
+		public long ページ数;
+		public double 時間ミリ秒, ページ毎秒;
+		public long 割当バイト数, 最大ヒープ, 最大RSS;
+		public int 削除行数, 挿入行数;
+		public List<String> 差分;
+		public Double 基準時間ミリ秒;
+		public boolean 低下;
+		public String エラー;
+	}
+
+	public static class レポート {
+		public String 日時, java, 抽出方式;
+		public int 反復数;
+		public long ページ数;
+		public double 時間ミリ秒, ページ毎秒;
+		public int 差分数, 低下数, 失敗数;
+		public boolean 合格;
+		public List<文書結果> 文書 = new ArrayList<>();
+	}
+
+	public static レポート レポート読込(Path file) throws IOException {
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return new Gson().fromJson(reader, レポート.class);
+		}
+	}
+
+	public static void レポート保存(レポート report, Path file) throws IOException {
+		Path dir = file.toAbsolutePath().getParent();
+		Files.createDirectories(dir);
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+		}
+	}
+
+	/**
+	 * 定義ファイルのテキスト変換と様式一覧変換を検査します。
+	 * 定義ファイルを指定しない場合は入力ディレクトリのすべてのPDFファイルを検査します。
+	 */
+	public レポート 実行(Path... jsonFiles) throws IOException {
+		List<一括変換.ジョブ> jobs = new ArrayList<>();
+		if (jsonFiles.length == 0)
+			jobs.addAll(ジョブ一覧());
+		else
+			for (Path json : jsonFiles)
+				for (一括変換.ジョブ job : 変換.ジョブ一覧(一括変換.定義読込(json)))
+					if (job.依存.isEmpty())
+						jobs.add(job);
+		return 実行(jobs);
+	}
+
+	List<一括変換.ジョブ> ジョブ一覧() throws IOException {
+		List<Path> pdfs;
+		try (Stream<Path> s = Files.walk(入力ディレクトリ)) {
+			pdfs = s.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().toLowerCase().endsWith(".pdf"))
+				.sorted().toList();
+		}
+		List<一括変換.ジョブ> jobs = new ArrayList<>();
+		for (Path pdf : pdfs) {
+			String relative = 入力ディレクトリ.relativize(pdf).toString().replace('\\', '/');
+			String 名前 = relative.substring(0, relative.length() - ".pdf".length()) + ".txt";
+			Path outFile = 作業ディレクトリ.resolve(名前);
+			IText itext = 縦書きパターン != null && 縦書きパターン.matcher(relative).find() ? 縦書き : 横書き;
+			jobs.add(変換.new ジョブ(名前, outFile, List.of(pdf), "", () -> {
+				Files.createDirectories(outFile.getParent());
+				itext.テキスト変換(outFile.toString(), pdf.toString());
+			}));
+		}
+		return jobs;
+	}
+
+	レポート 実行(List<一括変換.ジョブ> jobs) throws IOException {
+		Files.createDirectories(作業ディレクトリ);
+		Map<String, Double> 基準 = new HashMap<>();
+		if (基準レポート != null)
+			for (文書結果 r : レポート読込(基準レポート).文書)
+				if (r.エラー == null)
+					基準.put(r.名前, r.時間ミリ秒);
+		レポート report = new レポート();
+		report.日時 = OffsetDateTime.now().toString();
+		report.java = Runtime.version().toString();
+		report.抽出方式 = 横書き.設定.抽出方式.toString();
+		report.反復数 = 反復数;
+		for (一括変換.ジョブ job : jobs) {
+			IText.logger.info(job.名前);
+			文書結果 r = 検査(job);
+			r.基準時間ミリ秒 = 基準.get(r.名前);
+			r.低下 = r.エラー == null && r.基準時間ミリ秒 != null && r.時間ミリ秒 > r.基準時間ミリ秒 * (1 + 許容低下率);
+			report.文書.add(r);
+			if (r.エラー != null)
+				++report.失敗数;
+			else {
+				report.ページ数 += r.ページ数;
+				report.時間ミリ秒 += r.時間ミリ秒;
+			}
+			if (r.状態.equals("差分"))
+				++report.差分数;
+			if (r.低下)
+				++report.低下数;
+		}
+		report.ページ毎秒 = report.時間ミリ秒 == 0 ? 0 : report.ページ数 * 1000 / report.時間ミリ秒;
+		report.合格 = report.差分数 == 0 && report.低下数 == 0 && report.失敗数 == 0;
+		return report;
+	}
+
+	文書結果 検査(一括変換.ジョブ job) {
+		文書結果 r = new 文書結果();
+		r.名前 = job.名前;
+		for (Path p : job.入力)
+			r.入力.add(p.toString());
+		try {
+			for (int i = 0; i < 反復数; ++i) {
+				long ページ数 = 集計.ページ数.sum();
+				資源 before = 資源.開始();
+				long start = System.nanoTime();
+				job.処理.実行();
+				double ms = (System.nanoTime() - start) / 1_000_000.0;
+				if (i == 0 || ms < r.時間ミリ秒) {
+					資源 after = 資源.終了();
+					r.時間ミリ秒 = ms;
+					r.ページ数 = 集計.ページ数.sum() - ページ数;
+					r.ページ毎秒 = r.ページ数 * 1000 / ms;
+					r.割当バイト数 = after.割当 < 0 ? -1 : after.割当 - before.割当;
+					r.最大ヒープ = after.ヒープ;
+					r.最大RSS = after.rss;
+				}
+			}
+			比較(job, r);
+		} catch (Exception e) {
+			IText.logger.warning(job.名前 + ": " + e);
+			r.状態 = "失敗";
+			r.エラー = e.toString();
+		}
+		return r;
+	}
+
+	void 比較(一括変換.ジョブ job, 文書結果 r) throws IOException {
+		Path 正解 = 正解ディレクトリ.resolve(job.名前);
+		if (!Files.exists(正解)) {
+			r.状態 = "正解なし";
+			if (正解更新) {
+				Files.createDirectories(正解.getParent());
+				Files.copy(job.出力, 正解, StandardCopyOption.REPLACE_EXISTING);
+				r.状態 = "更新";
+			}
+			return;
+		}
+		if (Files.mismatch(正解, job.出力) == -1) {
+			r.状態 = "一致";
+			return;
+		}
+		行差分 diff = 行差分.比較(行読込(正解), 行読込(job.出力), 最大編集数);
+		r.状態 = "差分";
+		r.削除行数 = diff.削除数();
+		r.挿入行数 = diff.挿入数();
+		r.差分 = diff.unified(差分表示行数);
+	}
+
+	/**
+	 * 改行文字を含めて1行とするので、改行文字の違いも差分になります。
+	 */
+	static List<String> 行読込(Path file) throws IOException {
+		String text = Files.readString(file, StandardCharsets.UTF_8);
+		List<String> lines = new ArrayList<>();
+		for (int start = 0, length = text.length(); start < length;) {
+			int end = text.indexOf('\n', start);
+			end = end < 0 ? length : end + 1;
+			lines.add(text.substring(start, end));
+			start = end;
+		}
+		return lines;
+	}
+
+	/**
+	 * 文書を処理する前後の資源の使用量です。取得できない値は-1です。
+	 */
+	record 資源(long 割当, long ヒープ, long rss) {
+
+		static final ThreadMXBean THREAD = ManagementFactory.getThreadMXBean();
+
+		static long 割当バイト数() {
+			if (THREAD instanceof com.sun.management.ThreadMXBean t && t.isThreadAllocatedMemorySupported()) {
+				t.setThreadAllocatedMemoryEnabled(true);
+				return t.getThreadAllocatedBytes(Thread.currentThread().threadId());
+			}
+			return -1;
+		}
+
+		static List<MemoryPoolMXBean> ヒープ一覧() {
+			return ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(p -> p.getType() == MemoryType.HEAP)
+				.toList();
+		}
+
+		/**
+		 * GCを実行してからヒープとRSSの最大値を戻します。
+		 */
+		static 資源 開始() {
+			System.gc();
+			for (MemoryPoolMXBean p : ヒープ一覧())
+				p.resetPeakUsage();
+			try {
+				// 5を書き込むとVmHWMを現在のRSSに戻す(Linux 4.0以降)
+				Files.writeString(Path.of("/proc/self/clear_refs"), "5");
+			} catch (IOException | RuntimeException e) {
+				// プロセス開始からの最大値になる
+			}
+			return new 資源(割当バイト数(), -1, -1);
+		}
+
+		static 資源 終了() {
+			long heap = 0;
+			for (MemoryPoolMXBean p : ヒープ一覧())
+				heap += p.getPeakUsage().getUsed();
+			return new 資源(割当バイト数(), heap, 最大RSS());
+		}
+
+		static long 最大RSS() {
+			try {
+				for (String line : Files.readAllLines(Path.of("/proc/self/status"), StandardCharsets.US_ASCII))
+					if (line.startsWith("VmHWM:"))
+						return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+			} catch (IOException | NumberFormatException e) {
+				// Linux以外
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * 引数は [オプション...] 入力ディレクトリ 正解ディレクトリ 作業ディレクトリ レポートファイル [定義ファイル...] です。
+	 * オプションは -基準 基準レポート、-反復 反復数、-許容 許容低下率、-縦書き 縦書きパターン、-更新 です。
+	 * 合格しなかった場合は終了コード1で終了します。
+	 */
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = new HashMap<>();
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("-"); ++i)
+			if (args[i].equals("-更新"))
+				options.put(args[i], "true");
+			else
+				options.put(args[i], args[++i]);
+		if (args.length - i < 4)
+			throw new IllegalArgumentException(
+				"usage: [-基準 レポート] [-反復 n] [-許容 率] [-縦書き パターン] [-更新] 入力ディレクトリ 正解ディレクトリ 作業ディレクトリ レポートファイル [定義ファイル...]");
+		コーパス検査 検査 = new コーパス検査(Path.of(args[i]), Path.of(args[i + 1]), Path.of(args[i + 2]));
+		Path reportFile = Path.of(args[i + 3]);
+		if (options.containsKey("-基準"))
+			検査.基準レポート = Path.of(options.get("-基準"));
+		if (options.containsKey("-反復"))
+			検査.反復数 = Integer.parseInt(options.get("-反復"));
+		if (options.containsKey("-許容"))
+			検査.許容低下率 = Double.parseDouble(options.get("-許容"));
+		if (options.containsKey("-縦書き"))
+			検査.縦書きパターン = Pattern.compile(options.get("-縦書き"));
+		検査.正解更新 = options.containsKey("-更新");
+		Path[] jsonFiles = new Path[args.length - i - 4];
+		for (int j = 0; j < jsonFiles.length; ++j)
+			jsonFiles[j] = Path.of(args[i + 4 + j]);
+		レポート report = 検査.実行(jsonFiles);
+		レポート保存(report, reportFile);
+		IText.OUT.printf("文書数=%d ページ数=%d ページ/秒=%.1f 差分=%d 低下=%d 失敗=%d %s%n",
+			report.文書.size(), report.ページ数, report.ページ毎秒, report.差分数, report.低下数, report.失敗数,
+			report.合格 ? "合格" : "不合格");
+		if (!report.合格)
+			System.exit(1);
+	}
+}
@@ -0,0 +1,314 @@
+package saka1029.pdf;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.itextpdf.text.DocumentException;
+
+import saka1029.pdf.IText.様式一覧;
+
+/**
+ * 常駐してテキスト変換、様式一覧変換、ページ分割の要求を処理します。
+ * JVMの起動、iTextのフォントやCMapの初期化、JITコンパイルを要求ごとに行わないので、
+ * 小さな要求はすぐに終わります。
+ * 要求は1行にタブ区切りで次のいずれかを指定します。
+ * <pre>
+ * テキスト変換 横書き|縦書き 出力ファイル 入力PDF...
+ * 様式一覧変換 横書き|縦書き 出力ファイル 入力PDF...
+ * ページ分割 様式一覧ファイル 出力ファイル接頭辞
+ * 状態
+ * 終了
+ * </pre>
+ * 応答は1行で、成功した場合は「OK タブ 処理時間(ミリ秒)」、
+ * 失敗した場合は「ERROR タブ メッセージ」です。
+ * 状態の応答は「OK タブ 統計」です。
+ * 要求は作業スレッドの数だけ並行して処理し、それを超える要求はキューで待ちます。
+ * 1つの接続の要求も応答を待たずに並行して処理し、要求の順に応答します。
+ * 同じ出力ファイルに書く要求を続けて送る場合は、前の要求の応答を待ってから送ってください。
+ * PDFファイルはリーダープールで開いたままにして次の要求で再利用します。
+ */
+public class サーバー implements Closeable {
+
+	final IText 横書き = new IText(true), 縦書き = new IText(false);
+	final リーダープール プール;
+	final ThreadPoolExecutor executor;
+	final LongAdder 処理数 = new LongAdder(), エラー数 = new LongAdder(), 合計時間 = new LongAdder();
+	final AtomicLong 最大時間 = new AtomicLong(), 最終時間 = new AtomicLong();
+	volatile boolean 終了 = false;
+
+	/**
+	 * @param 作業スレッド数 同時に処理する要求の数を指定します。
+	 * @param プール最大数 開いたまま保持するPdfReaderの最大数を指定します。
+	 */
+	public サーバー(int 作業スレッド数, int プール最大数) {
+		プール = new リーダープール(プール最大数, false);
+		executor = new ThreadPoolExecutor(作業スレッド数, 作業スレッド数, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+	}
+
+	IText itext(String 方向) {
+		return switch (方向) {
+			case "横書き" -> 横書き;
+			case "縦書き" -> 縦書き;
+			default -> throw new IllegalArgumentException("横書きまたは縦書きを指定してください: " + 方向);
+		};
+	}
+
+	/**
+	 * 1行の要求を処理して応答を返します。
+	 */
+	public String 要求(String line) {
+		return 応答(受付(line));
+	}
+
+	/**
+	 * 1行の要求を作業スレッドに渡して、応答を返すFutureを返します。
+	 * 状態と終了はキューを経由せずに処理し、完了したFutureを返します。
+	 */
+	Future<String> 受付(String line) {
+		String[] args = line.split("\t");
+		switch (args[0]) {
+			case "状態":
+				return CompletableFuture.completedFuture("OK\t" + 状態());
+			case "終了":
+				終了 = true;
+				return CompletableFuture.completedFuture("OK\t0");
+		}
+		return executor.submit(() -> 実行(args));
+	}
+
+	/**
+	 * 要求の処理が終わるのを待って応答を返します。
+	 */
+	static String 応答(Future<String> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return "ERROR\t" + e;
+		} catch (ExecutionException e) {
+			return "ERROR\t" + e.getCause();
+		}
+	}
+
+	String 実行(String[] args) {
+		long start = System.nanoTime();
+		try {
+			switch (args[0]) {
+				case "テキスト変換" -> テキスト変換(itext(args[1]), args[2], Arrays.copyOfRange(args, 3, args.length));
+				case "様式一覧変換" -> 様式一覧変換(itext(args[1]), args[2], Arrays.copyOfRange(args, 3, args.length));
+				case "ページ分割" -> ページ分割(args[1], args[2]);
+				default -> throw new IllegalArgumentException("不明な要求: " + args[0]);
+			}
+		} catch (Exception e) {
+			エラー数.increment();
+			return "ERROR\t" + e;
+		}
+		long nanos = System.nanoTime() - start;
+		処理数.increment();
+		合計時間.add(nanos);
+		最終時間.set(nanos);
+		最大時間.accumulateAndGet(nanos, Math::max);
+		return "OK\t" + nanos / 1_000_000;
+	}
+
+	void テキスト変換(IText itext, String outFile, String... inFiles) throws IOException {
+		try (出力バッファ writer = itext.出力(outFile, itext.設定.出力文字セット)) {
+			for (String path : inFiles)
+				try (リーダープール.貸出 r = プール.借りる(path)) {
+					itext.テキスト変換(writer, path, r.reader);
+				}
+		}
+	}
+
+	void 様式一覧変換(IText itext, String outFile, String... inFiles) throws IOException {
+		try (出力バッファ writer = itext.出力(outFile, IText.既定文字セット)) {
+			for (String path : inFiles)
+				try (リーダープール.貸出 r = プール.借りる(path)) {
+					itext.様式一覧出力(writer, path, itext.様式検出(path, r.reader));
+				}
+		}
+	}
+
+	void ページ分割(String indexFile, String outFilePrefix) throws IOException, DocumentException {
+		for (様式一覧 index : IText.様式一覧読込(indexFile)) {
+			if (index.pdf() == null)
+				continue;
+			try (リーダープール.貸出 r = プール.借りる(index.pdf())) {
+				for (様式 form : index.forms())
+					IText.writePages(r.reader, outFilePrefix + form.id() + ".pdf", form.startPage(), form.endPage());
+			}
+		}
+	}
+
+	/**
+	 * キューで待っている要求の数、処理中の要求の数、処理時間の統計、リーダープールの状態を返します。
+	 */
+	public String 状態() {
+		long count = 処理数.sum();
+		return "キュー=%d 処理中=%d 処理数=%d エラー数=%d 平均=%dms 最大=%dms 最終=%dms プール=%d 再利用=%d 読込=%d".formatted(
+			executor.getQueue().size(), executor.getActiveCount(), count, エラー数.sum(),
+			count == 0 ? 0 : 合計時間.sum() / count / 1_000_000, 最大時間.get() / 1_000_000, 最終時間.get() / 1_000_000,
+			プール.待機数(), プール.再利用数.sum(), プール.読込数.sum());
+	}
+
+	/**
+	 * 1つの接続の要求を入力が終わるか終了を要求されるまで処理します。
+	 * 読み込んだ要求は応答を待たずに作業スレッドに渡し、
+	 * 応答は書込スレッドが要求の順に書き出します。
+	 * すべての応答を書き出してから戻ります。
+	 */
+	public void 接続(BufferedReader in, PrintWriter out) throws IOException {
+		BlockingQueue<Optional<Future<String>>> 応答待ち = new LinkedBlockingQueue<>();
+		Thread writer = new Thread(() -> {
+			try {
+				Optional<Future<String>> future;
+				while ((future = 応答待ち.take()).isPresent()) {
+					out.println(応答(future.get()));
+					out.flush();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		writer.start();
+		try {
+			String line;
+			while (!終了 && (line = in.readLine()) != null)
+				if (!line.isBlank())
+					応答待ち.add(Optional.of(受付(line)));
+		} finally {
+			応答待ち.add(Optional.empty());
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Unixドメインソケットで接続を受け付けます。接続ごとにスレッドを作成します。
+	 * 終了を要求されるとソケットに接続して待受を起こし、
+	 * ServerSocketChannelはこのメソッドで閉じます。
+	 * 他の接続は入力を閉じて、受け付けた要求の応答をすべて書き出すのを待ってから戻ります。
+	 */
+	public void 待受(Path socket) throws IOException {
+		Files.deleteIfExists(socket);
+		UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+		AtomicBoolean 起床 = new AtomicBoolean();
+		Map<SocketChannel, Thread> 接続中 = new ConcurrentHashMap<>();
+		try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+			server.bind(address);
+			while (true) {
+				SocketChannel client = server.accept();
+				if (終了) {
+					client.close();
+					break;
+				}
+				Thread thread = new Thread(() -> {
+					try (SocketChannel c = client;
+						BufferedReader in = new BufferedReader(Channels.newReader(c, IText.既定文字セット));
+						PrintWriter out = new PrintWriter(Channels.newWriter(c, IText.既定文字セット))) {
+						接続(in, out);
+					} catch (IOException e) {
+						IText.logger.warning("接続エラー: " + e);
+					} finally {
+						接続中.remove(client);
+					}
+					if (終了 && 起床.compareAndSet(false, true))
+						起こす(address);
+				});
+				thread.setDaemon(true);
+				接続中.put(client, thread);
+				thread.start();
+			}
+			for (SocketChannel c : 接続中.keySet())
+				try {
+					c.shutdownInput();
+				} catch (IOException e) {
+					IText.logger.fine("入力を閉じられません: " + e);
+				}
+			for (Thread thread : 接続中.values())
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException(e.getMessage());
+				}
+		} finally {
+			Files.deleteIfExists(socket);
+		}
+	}
+
+	/**
+	 * acceptで待っている待受を起こすために接続してすぐに閉じます。
+	 */
+	static void 起こす(UnixDomainSocketAddress address) {
+		try {
+			SocketChannel.open(address).close();
+		} catch (IOException e) {
+			IText.logger.warning("終了通知エラー: " + e);
+		}
+	}
+
+	/**
+	 * 受け付けた要求は取り消さずにすべて処理してから終了します。
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		プール.close();
+	}
+
+	/**
+	 * 引数を指定しない場合は標準入力から要求を読み、標準出力に応答を書きます。
+	 * この場合はITextが標準出力に書く文書属性を標準エラー出力に切り替えます。
+	 * 引数にUnixドメインソケットのパスを指定した場合はソケットで待ち受けます。
+	 * 作業スレッド数はシステムプロパティpdf.threads(既定値1)で指定します。
+	 */
+	public static void main(String[] args) throws IOException {
+		PrintStream stdout = System.out;
+		if (args.length == 0)
+			System.setOut(System.err);
+		try (サーバー server = new サーバー(Integer.getInteger("pdf.threads", 1), 16)) {
+			if (args.length == 0)
+				server.接続(new BufferedReader(new InputStreamReader(System.in, IText.既定文字セット)),
+					new PrintWriter(new OutputStreamWriter(stdout, IText.既定文字セット)));
+			else
+				server.待受(Path.of(args[0]));
+		}
+	}
+}
@@ -0,0 +1,382 @@
+package saka1029.pdf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 入力ディレクトリ(サブディレクトリを含む)をWatchServiceで監視し、
+ * 追加または更新されたPDFファイルをすぐに変換します。
+ * PDFファイルは最後のイベントから待機時間のあいだ大きさと更新日時が変わらなくなってから変換するので、
+ * 書き込み途中のファイルは変換しません。
+ * 様式パターンに一致するファイルは様式一覧変換してからページ分割し、それ以外はテキスト変換します。
+ * 出力は 出力ディレクトリ/相対パス から.pdfを除いた名前に.txtを付けたファイルで、
+ * ページ分割の出力は.txtを除いた名前のディレクトリです。
+ * 出力は一時ファイル(ページ分割は一時ディレクトリ)に書き出してから置き換えます。
+ * 一括変換と同じく入力ファイルとオプションの指紋を状態ファイルに保存し、
+ * 開始時と再起動後も変更のないファイルは変換しません。
+ * 変換は作業スレッドの数まで並行して実行しますが、同じファイルの変換は並行して実行しません。
+ * 出力ディレクトリは入力ディレクトリの外に指定してください。
+ */
+public class フォルダ監視 implements Closeable {
+
+	public final Path 入力ディレクトリ, 出力ディレクトリ;
+	final 一括変換 変換;
+	/**
+	 * オプションを変更する場合は抽出設定から作成したITextに置き換えます。
+	 * 変換はファイルの変更を検出したときのITextで実行します。
+	 */
+	public IText 横書き = new IText(true), 縦書き = new IText(false);
+	/**
+	 * 入力ディレクトリからの相対パスがこのパターンを含むPDFファイルを縦書きとします。
+	 */
+	public Pattern 縦書きパターン = null;
+	/**
+	 * 入力ディレクトリからの相対パスがこのパターンを含むPDFファイルを様式とします。
+	 */
+	public Pattern 様式パターン = null;
+	/**
+	 * ページ分割の出力ファイル接頭辞です。
+	 */
+	public String 様式接頭辞 = "BESI";
+	/**
+	 * 最後のイベントから変換を始めるまでの時間(ミリ秒)です。
+	 */
+	public long 待機ミリ秒 = 500;
+	public final LongAdder 変換数 = new LongAdder(), 省略数 = new LongAdder(), エラー数 = new LongAdder();
+
+	final WatchService watcher;
+	final Map<WatchKey, Path> ディレクトリ = new HashMap<>();
+	final ScheduledExecutorService タイマー = Executors.newSingleThreadScheduledExecutor();
+	final ThreadPoolExecutor executor;
+	Thread 監視スレッド;
+
+	/**
+	 * ファイルごとの待機中の確認です。
+	 */
+	final Map<Path, ScheduledFuture<?>> 予約 = new HashMap<>();
+	final Set<Path> 実行中 = new HashSet<>(), 再実行 = new HashSet<>();
+	/**
+	 * 予約中と実行中のファイルの数です。
+	 */
+	int 未完了 = 0;
+
+	/**
+	 * @param 状態ファイル 変換したファイルの指紋を保存するファイルを指定します。
+	 * @param 作業スレッド数 同時に変換するファイルの数を指定します。
+	 */
+	public フォルダ監視(Path 入力ディレクトリ, Path 出力ディレクトリ, Path 状態ファイル, int 作業スレッド数) throws IOException {
+		this.入力ディレクトリ = 入力ディレクトリ.toAbsolutePath();
+		this.出力ディレクトリ = 出力ディレクトリ.toAbsolutePath();
+		this.変換 = new 一括変換(this.入力ディレクトリ, this.出力ディレクトリ, 状態ファイル);
+		this.watcher = FileSystems.getDefault().newWatchService();
+		this.executor = new ThreadPoolExecutor(作業スレッド数, 作業スレッド数, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+	}
+
+	/**
+	 * 監視を開始します。
+	 * 監視を登録してから既存のPDFファイルを調べるので、その間に追加されたファイルも変換します。
+	 */
+	public void 開始() throws IOException {
+		変換.状態読込();
+		Files.createDirectories(出力ディレクトリ);
+		登録(入力ディレクトリ);
+		監視スレッド = new Thread(this::監視, "フォルダ監視");
+		監視スレッド.setDaemon(true);
+		監視スレッド.start();
+	}
+
+	void 登録(Path dir) throws IOException {
+		List<Path> pdfs = new ArrayList<>();
+		try (Stream<Path> s = Files.walk(dir)) {
+			for (Path p : (Iterable<Path>) s::iterator)
+				if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+					WatchKey key = p.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+					synchronized (ディレクトリ) {
+						ディレクトリ.put(key, p);
+					}
+				} else if (PDF(p))
+					pdfs.add(p);
+		}
+		for (Path pdf : pdfs)
+			予約(pdf);
+	}
+
+	static boolean PDF(Path p) {
+		return p.getFileName().toString().toLowerCase().endsWith(".pdf");
+	}
+
+	void 監視() {
+		try {
+			while (true) {
+				WatchKey key = watcher.take();
+				Path dir;
+				synchronized (ディレクトリ) {
+					dir = ディレクトリ.get(key);
+				}
+				for (WatchEvent<?> event : key.pollEvents())
+					try {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+							// 取りこぼしたイベントがあるのですべて調べ直す
+							登録(入力ディレクトリ);
+						else {
+							Path p = dir.resolve((Path) event.context());
+							if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+								if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+									登録(p);
+							} else if (PDF(p))
+								予約(p);
+						}
+					} catch (IOException | UncheckedIOException e) {
+						// 登録中に削除されたディレクトリ
+						IText.logger.warning(dir + ": " + e);
+					}
+				if (!key.reset())
+					synchronized (ディレクトリ) {
+						ディレクトリ.remove(key);
+					}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// 終了
+		}
+	}
+
+	static String 指紋(Path p) {
+		try {
+			return リーダープール.指紋(p.toString());
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 待機時間の後にファイルを確認します。すでに予約がある場合は延期します。
+	 */
+	synchronized void 予約(Path pdf) {
+		ScheduledFuture<?> old = 予約.remove(pdf);
+		if (old != null && old.cancel(false))
+			--未完了;
+		String 指紋 = 指紋(pdf);
+		if (指紋 == null || タイマー.isShutdown())
+			return;
+		++未完了;
+		予約.put(pdf, タイマー.schedule(() -> 確認(pdf, 指紋), 待機ミリ秒, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * 予約してから大きさと更新日時が変わっていなければ変換を開始します。
+	 * 変わっていれば予約し直し、同じファイルを変換中であれば終了後に変換し直します。
+	 */
+	synchronized void 確認(Path pdf, String 指紋) {
+		予約.remove(pdf);
+		--未完了;
+		String now = 指紋(pdf);
+		if (now == null) {
+			// 削除された
+		} else if (!now.equals(指紋))
+			予約(pdf);
+		else if (実行中.contains(pdf))
+			再実行.add(pdf);
+		else if (!executor.isShutdown()) {
+			実行中.add(pdf);
+			++未完了;
+			executor.execute(() -> 実行(pdf));
+		}
+		notifyAll();
+	}
+
+	void 実行(Path pdf) {
+		try {
+			boolean 実行 = false;
+			for (一括変換.ジョブ job : ジョブ一覧(pdf))
+				実行 |= 変換.ジョブ実行(job);
+			if (実行) {
+				変換数.increment();
+				synchronized (変換) {
+					変換.状態保存();
+				}
+			} else
+				省略数.increment();
+		} catch (NoSuchFileException e) {
+			IText.logger.info(pdf + ": 削除されました");
+		} catch (Exception e) {
+			エラー数.increment();
+			IText.logger.warning(pdf + ": " + e);
+		} finally {
+			synchronized (this) {
+				実行中.remove(pdf);
+				--未完了;
+				if (再実行.remove(pdf))
+					予約(pdf);
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * pdfを変換するジョブです。ページ分割は様式一覧変換の後に実行します。
+	 */
+	List<一括変換.ジョブ> ジョブ一覧(Path pdf) {
+		String relative = 入力ディレクトリ.relativize(pdf).toString().replace('\\', '/');
+		String stem = relative.substring(0, relative.length() - ".pdf".length());
+		String 名前 = stem + ".txt";
+		Path outFile = 出力ディレクトリ.resolve(名前);
+		String in = pdf.toString();
+		List<一括変換.ジョブ> jobs = new ArrayList<>();
+		if (様式パターン != null && 様式パターン.matcher(relative).find()) {
+			IText itext = 横書き;
+			jobs.add(変換.new ジョブ(名前, outFile, List.of(pdf), "様式一覧変換;" + itext.設定.変換オプション(),
+				() -> 置換(outFile, temp -> itext.様式一覧変換(temp.toString(), in))));
+			Path outDir = 出力ディレクトリ.resolve(stem);
+			IText.分割オプション option = 変換.分割オプション;
+			jobs.add(変換.new ジョブ(stem, outDir, List.of(pdf, outFile), "ページ分割;" + 様式接頭辞 + ";" + option,
+				() -> ディレクトリ置換(outDir, temp -> IText.ページ分割(outFile.toString(), temp.toString(),
+					temp.resolve(様式接頭辞).toString(), option))));
+		} else {
+			IText itext = 縦書きパターン != null && 縦書きパターン.matcher(relative).find() ? 縦書き : 横書き;
+			jobs.add(変換.new ジョブ(名前, outFile, List.of(pdf), "テキスト変換;" + itext.設定.変換オプション(),
+				() -> 置換(outFile, temp -> itext.テキスト変換(temp.toString(), in))));
+		}
+		return jobs;
+	}
+
+	interface 書込 {
+		void 実行(Path temp) throws Exception;
+	}
+
+	/**
+	 * 同じディレクトリの一時ファイルに書き出してから置き換えます。
+	 */
+	static void 置換(Path outFile, 書込 書込) throws Exception {
+		Path dir = outFile.getParent();
+		Files.createDirectories(dir);
+		Path temp = Files.createTempFile(dir, outFile.getFileName().toString(), ".tmp");
+		try {
+			書込.実行(temp);
+			移動(temp, outFile);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * 同じディレクトリの一時ディレクトリに書き出してから、以前のディレクトリを削除して置き換えます。
+	 */
+	static void ディレクトリ置換(Path outDir, 書込 書込) throws Exception {
+		Path dir = outDir.getParent();
+		Files.createDirectories(dir);
+		Path temp = Files.createTempDirectory(dir, outDir.getFileName().toString());
+		try {
+			書込.実行(temp);
+			削除(outDir);
+			移動(temp, outDir);
+		} finally {
+			削除(temp);
+		}
+	}
+
+	static void 移動(Path from, Path to) throws IOException {
+		try {
+			Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	static void 削除(Path dir) throws IOException {
+		if (!Files.exists(dir))
+			return;
+		try (Stream<Path> s = Files.walk(dir)) {
+			for (Path p : (Iterable<Path>) s.sorted(Comparator.reverseOrder())::iterator)
+				Files.delete(p);
+		}
+	}
+
+	/**
+	 * 予約中と実行中の変換がなくなるまで待ちます。
+	 * @return 時間内に終わった場合はtrueを返します。
+	 */
+	public synchronized boolean 待機(long timeoutMillis) throws InterruptedException {
+		long end = System.currentTimeMillis() + timeoutMillis;
+		for (long rest = timeoutMillis; 未完了 > 0; rest = end - System.currentTimeMillis()) {
+			if (rest <= 0)
+				return false;
+			wait(rest);
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		watcher.close();
+		if (監視スレッド != null)
+			監視スレッド.interrupt();
+		synchronized (this) {
+			タイマー.shutdownNow();
+			executor.shutdown();
+		}
+		IText.shutdown(タイマー);
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 引数は [-縦書き パターン] [-様式 パターン] [-並列度 n] 入力ディレクトリ 出力ディレクトリ 状態ファイル です。
+	 * 終了するまで監視を続けます。
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Map<String, String> options = new HashMap<>();
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("-"); i += 2)
+			options.put(args[i], args[i + 1]);
+		if (args.length - i != 3)
+			throw new IllegalArgumentException("usage: [-縦書き パターン] [-様式 パターン] [-並列度 n] 入力ディレクトリ 出力ディレクトリ 状態ファイル");
+		int 並列度 = Integer.parseInt(options.getOrDefault("-並列度", "" + Runtime.getRuntime().availableProcessors()));
+		フォルダ監視 監視 = new フォルダ監視(Path.of(args[i]), Path.of(args[i + 1]), Path.of(args[i + 2]), 並列度);
+		if (options.containsKey("-縦書き"))
+			監視.縦書きパターン = Pattern.compile(options.get("-縦書き"));
+		if (options.containsKey("-様式"))
+			監視.様式パターン = Pattern.compile(options.get("-様式"));
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				監視.close();
+			} catch (IOException e) {
+				IText.logger.warning(e.toString());
+			}
+		}));
+		監視.開始();
+		IText.logger.info("監視中: " + 監視.入力ディレクトリ);
+		監視.監視スレッド.join();
+	}
+}
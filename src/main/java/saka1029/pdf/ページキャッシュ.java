@@ -0,0 +1,268 @@
+package saka1029.pdf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.itextpdf.text.pdf.PRStream;
+import com.itextpdf.text.pdf.PdfArray;
+import com.itextpdf.text.pdf.PdfDictionary;
+import com.itextpdf.text.pdf.PdfIndirectReference;
+import com.itextpdf.text.pdf.PdfName;
+import com.itextpdf.text.pdf.PdfObject;
+import com.itextpdf.text.pdf.PdfReader;
+
+/**
+ * ページの解析結果(要素表)をディレクトリに保存するキャッシュです。
+ * キーはキャッシュの版、ページのコンテンツストリームとリソース(フォント、XObjectなど)の内容、
+ * および解析結果に影響するITextのオプションのハッシュ値なので、
+ * 異なるPDFファイルでも内容が同じページは同じキャッシュを使います。
+ * ファイルは一時ファイルに書き出してから名前を変更するので、
+ * 複数のプロセスが同じディレクトリを同時に使用できます。
+ * 合計サイズが最大バイト数を超えると最終使用日時の古いファイルから削除します。
+ */
+public class ページキャッシュ {
+
+	static final int MAGIC = 0x50474331; // "PGC1"
+	/**
+	 * キャッシュの版です。キーに含めるので、版が異なるキャッシュは使用しません。
+	 * ファイルの形式、またはページの解析(抽出器、座標の計算、グリフ結合など)を変更して
+	 * 同じページとオプションから異なる要素表ができる場合は必ず番号を上げます。
+	 */
+	public static final int 版 = 1;
+	static final String 拡張子 = ".pgc";
+
+	public final Path ディレクトリ;
+	public final long 最大バイト数;
+	/**
+	 * このプロセスから見たキャッシュの合計サイズです。
+	 * 他のプロセスの書き込みは削除時のディレクトリ走査で反映します。
+	 */
+	long 合計バイト数 = -1;
+
+	public ページキャッシュ(Path ディレクトリ, long 最大バイト数) throws IOException {
+		this.ディレクトリ = Files.createDirectories(ディレクトリ);
+		this.最大バイト数 = 最大バイト数;
+	}
+
+	/**
+	 * 1つのPdfReaderのページのキーを計算します。
+	 * ページ間で共有されるフォントなどのハッシュ値は間接参照の番号ごとに再利用します。
+	 * PdfReaderと同じくスレッドセーフではありません。
+	 */
+	public static class 文書 {
+		final PdfReader reader;
+		final byte[] オプション;
+		final Map<Integer, byte[]> 参照ハッシュ = new HashMap<>();
+
+		public 文書(PdfReader reader, String オプション) {
+			this.reader = reader;
+			this.オプション = オプション.getBytes(StandardCharsets.UTF_8);
+		}
+
+		public String key(int pageNo) throws IOException {
+			MessageDigest md = sha256();
+			md.update(intBytes(版));
+			md.update(オプション);
+			md.update(reader.getPageContent(pageNo));
+			md.update((byte) 0);
+			digest(md, reader.getPageN(pageNo).get(PdfName.RESOURCES));
+			return HexFormat.of().formatHex(md.digest());
+		}
+
+		void digest(MessageDigest md, PdfObject obj) throws IOException {
+			if (obj == null) {
+				md.update((byte) 'N');
+			} else if (obj.isIndirect()) {
+				md.update(reference((PdfIndirectReference) obj));
+			} else if (obj.isStream()) {
+				md.update((byte) 'S');
+				digestDictionary(md, (PdfDictionary) obj);
+				md.update(PdfReader.getStreamBytesRaw((PRStream) obj));
+			} else if (obj.isDictionary()) {
+				md.update((byte) 'D');
+				digestDictionary(md, (PdfDictionary) obj);
+			} else if (obj.isArray()) {
+				PdfArray array = (PdfArray) obj;
+				md.update((byte) 'A');
+				md.update(intBytes(array.size()));
+				for (int i = 0, size = array.size(); i < size; ++i)
+					digest(md, array.getPdfObject(i));
+			} else if (obj.isString()) {
+				md.update((byte) 'T');
+				byte[] bytes = obj.getBytes();
+				md.update(intBytes(bytes.length));
+				md.update(bytes);
+			} else {
+				md.update((byte) 'P');
+				byte[] bytes = obj.toString().getBytes(StandardCharsets.UTF_8);
+				md.update(intBytes(bytes.length));
+				md.update(bytes);
+			}
+		}
+
+		void digestDictionary(MessageDigest md, PdfDictionary dict) throws IOException {
+			List<PdfName> keys = new ArrayList<>(dict.getKeys());
+			keys.sort(Comparator.naturalOrder());
+			md.update(intBytes(keys.size()));
+			for (PdfName key : keys) {
+				if (PdfName.PARENT.equals(key))
+					continue;
+				digest(md, key);
+				digest(md, dict.get(key));
+			}
+		}
+
+		/**
+		 * 間接参照先のハッシュ値を返します。
+		 * 循環参照の場合は計算中の参照を番号だけで表します。
+		 */
+		byte[] reference(PdfIndirectReference ref) throws IOException {
+			int number = ref.getNumber();
+			byte[] hash = 参照ハッシュ.get(number);
+			if (hash != null)
+				return hash;
+			参照ハッシュ.put(number, intBytes(number));
+			MessageDigest md = sha256();
+			md.update((byte) 'R');
+			digest(md, PdfReader.getPdfObject(ref));
+			hash = md.digest();
+			参照ハッシュ.put(number, hash);
+			return hash;
+		}
+	}
+
+	static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static byte[] intBytes(int i) {
+		return new byte[] {(byte) (i >>> 24), (byte) (i >>> 16), (byte) (i >>> 8), (byte) i};
+	}
+
+	Path path(String key) {
+		return ディレクトリ.resolve(key.substring(0, 2)).resolve(key + 拡張子);
+	}
+
+	/**
+	 * キャッシュから要素表を読み込みます。
+	 * 見つからない場合や壊れている場合はnullを返します。
+	 */
+	public 要素表 get(String key) {
+		Path path = path(key);
+		try (InputStream in = Files.newInputStream(path);
+			DataInputStream data = new DataInputStream(new BufferedInputStream(new InflaterInputStream(in)))) {
+			if (data.readInt() != MAGIC)
+				throw new IOException("bad magic: " + path);
+			要素表 page = 要素表.read(data);
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+			return page;
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			IText.logger.warning("broken cache: " + path + ": " + e);
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException ignore) {
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * 要素表をキャッシュに保存します。
+	 */
+	public void put(String key, 要素表 page) throws IOException {
+		Path path = path(key);
+		Path dir = Files.createDirectories(path.getParent());
+		Path temp = Files.createTempFile(dir, key, ".tmp");
+		try {
+			try (OutputStream out = Files.newOutputStream(temp);
+				DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(out)))) {
+				data.writeInt(MAGIC);
+				page.write(data);
+			}
+			long size = Files.size(temp);
+			try {
+				Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+			追加(size);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	synchronized void 追加(long size) throws IOException {
+		if (合計バイト数 < 0)
+			合計バイト数 = 走査().stream().mapToLong(e -> e.size).sum();
+		else
+			合計バイト数 += size;
+		if (合計バイト数 > 最大バイト数)
+			削除();
+	}
+
+	record 項目(Path path, long size, long lastModified) {
+	}
+
+	List<項目> 走査() throws IOException {
+		List<項目> list = new ArrayList<>();
+		try (Stream<Path> files = Files.walk(ディレクトリ, 2)) {
+			for (Path p : (Iterable<Path>) files::iterator) {
+				if (!p.getFileName().toString().endsWith(拡張子))
+					continue;
+				try {
+					list.add(new 項目(p, Files.size(p), Files.getLastModifiedTime(p).toMillis()));
+				} catch (NoSuchFileException e) {
+					// 他のプロセスが削除した
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * 最終使用日時の古いファイルから合計サイズが最大バイト数の9割以下になるまで削除します。
+	 */
+	void 削除() throws IOException {
+		項目[] entries = 走査().toArray(項目[]::new);
+		Arrays.sort(entries, Comparator.comparingLong(項目::lastModified));
+		long total = 0;
+		for (項目 e : entries)
+			total += e.size;
+		long limit = 最大バイト数 / 10 * 9;
+		for (int i = 0; i < entries.length && total > limit; ++i) {
+			Files.deleteIfExists(entries[i].path);
+			total -= entries[i].size;
+		}
+		合計バイト数 = total;
+	}
+}
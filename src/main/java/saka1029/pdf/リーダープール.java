@@ -0,0 +1,111 @@
+package saka1029.pdf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.itextpdf.text.pdf.PdfReader;
+
+/**
+ * 最近使用したPdfReaderを保持して再利用します。
+ * PdfReaderはスレッドセーフではないので、借りる()で取り出して使用し、
+ * 返却(close())するまで他のスレッドには渡しません。
+ * 同じファイルを同時に使用する場合は別のPdfReaderを開きます。
+ * ファイルの大きさか更新日時が変わった場合は開き直します。
+ * 使用していないPdfReaderが最大数を超えた場合は最も前に返却したものを閉じます。
+ */
+public class リーダープール implements Closeable {
+
+	public final int 最大数;
+	public final boolean 部分読込;
+	final Deque<貸出> 待機 = new ArrayDeque<>();
+	public final LongAdder 再利用数 = new LongAdder(), 読込数 = new LongAdder();
+
+	public リーダープール(int 最大数, boolean 部分読込) {
+		this.最大数 = 最大数;
+		this.部分読込 = 部分読込;
+	}
+
+	/**
+	 * 借りたPdfReaderです。close()でプールに返却します。
+	 */
+	public class 貸出 implements Closeable {
+		public final String path;
+		public final PdfReader reader;
+		final String 指紋;
+
+		貸出(String path, PdfReader reader, String 指紋) {
+			this.path = path;
+			this.reader = reader;
+			this.指紋 = 指紋;
+		}
+
+		@Override
+		public void close() {
+			返却(this);
+		}
+	}
+
+	static String 指紋(String path) throws IOException {
+		Path p = Path.of(path);
+		return Files.size(p) + ":" + Files.getLastModifiedTime(p).toMillis();
+	}
+
+	/**
+	 * pathのPdfReaderを借ります。
+	 * 更新前のファイルのPdfReaderが見つかった場合は閉じます。
+	 */
+	public 貸出 借りる(String path) throws IOException {
+		String 指紋 = 指紋(path);
+		List<貸出> stale = new ArrayList<>();
+		try {
+			synchronized (this) {
+				for (Iterator<貸出> i = 待機.descendingIterator(); i.hasNext();) {
+					貸出 e = i.next();
+					if (!e.path.equals(path))
+						continue;
+					i.remove();
+					if (e.指紋.equals(指紋)) {
+						再利用数.increment();
+						return e;
+					}
+					stale.add(e);
+				}
+			}
+		} finally {
+			for (貸出 e : stale)
+				e.reader.close();
+		}
+		読込数.increment();
+		return new 貸出(path, IText.開く(path, 部分読込), 指紋);
+	}
+
+	void 返却(貸出 e) {
+		貸出 evicted = null;
+		synchronized (this) {
+			待機.addLast(e);
+			if (待機.size() > 最大数)
+				evicted = 待機.removeFirst();
+		}
+		if (evicted != null)
+			evicted.reader.close();
+	}
+
+	public synchronized int 待機数() {
+		return 待機.size();
+	}
+
+	@Override
+	public synchronized void close() {
+		for (貸出 e : 待機)
+			e.reader.close();
+		待機.clear();
+	}
+}
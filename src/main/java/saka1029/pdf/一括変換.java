@@ -0,0 +1,316 @@
+package saka1029.pdf;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * 年度ごとの定義ファイル(r0110.jsonなど)にしたがって、
+ * 点数表のテキスト変換、様式一覧変換、ページ分割をまとめて実行します。
+ * ページ分割はその様式一覧変換が終わってから実行し、
+ * 依存関係のない変換は並列度の数まで並行して実行します。
+ * 変換ごとに入力ファイルの大きさと更新日時、ITextのオプションから指紋を求めて状態ファイルに保存し、
+ * 次回は指紋が同じで出力ファイルが存在する変換を省略します。
+ * PDFは 入力ディレクトリ/年度/区分/pdf/ファイル名 にあるものとし、
+ * 出力は 出力ディレクトリ/年度-区分-種類.txt に書き出します。
+ * ページ分割の出力は様式一覧ファイルから.txtを除いた名前のディレクトリです。
+ */
+public class 一括変換 {
+
+	/**
+	 * 年度ごとの定義ファイルの内容です。
+	 */
+	public static class 定義 {
+		public String 元号, 年度;
+		public String[] 医科告示PDF, 医科通知PDF;
+		public String[] 歯科告示PDF, 歯科通知PDF;
+		public String[] 調剤告示PDF, 調剤通知PDF;
+		public String[] 施設基準告示PDF, 施設基準通知PDF;
+		public String[] 医科様式PDF, 歯科様式PDF, 調剤様式PDF;
+		public String[] 施設基準基本様式PDF, 施設基準特掲様式PDF;
+	}
+
+	public static 定義 定義読込(Path jsonFile) throws IOException {
+		try (Reader reader = Files.newBufferedReader(jsonFile, IText.既定文字セット)) {
+			return new Gson().fromJson(reader, 定義.class);
+		}
+	}
+
+	public final Path 入力ディレクトリ, 出力ディレクトリ, 状態ファイル;
+	/**
+	 * オプションを変更する場合は抽出設定から作成したITextに置き換えます。
+	 * 変換はジョブ一覧を作成したときのITextで実行します。
+	 */
+	public IText 横書き = new IText(true), 縦書き = new IText(false);
+	public IText.分割オプション 分割オプション = IText.分割オプション.既定;
+	/**
+	 * 同時に実行する変換の数です。
+	 */
+	public int 並列度 = Runtime.getRuntime().availableProcessors();
+	/**
+	 * 前回の実行で成功した変換の指紋です。キーは出力ファイルの名前です。
+	 */
+	final Map<String, String> 状態 = new TreeMap<>();
+
+	public 一括変換(Path 入力ディレクトリ, Path 出力ディレクトリ, Path 状態ファイル) {
+		this.入力ディレクトリ = 入力ディレクトリ;
+		this.出力ディレクトリ = 出力ディレクトリ;
+		this.状態ファイル = 状態ファイル;
+	}
+
+	interface 処理 {
+		void 実行() throws Exception;
+	}
+
+	/**
+	 * 1つの変換です。
+	 * 指紋は依存する変換が終わってから求めるので、
+	 * 様式一覧ファイルを作り直した場合はページ分割も実行します。
+	 */
+	class ジョブ {
+		final String 名前;
+		final Path 出力;
+		final List<Path> 入力;
+		final String オプション;
+		final 処理 処理;
+		final List<ジョブ> 依存 = new ArrayList<>();
+		CompletableFuture<Void> future;
+
+		ジョブ(String 名前, Path 出力, List<Path> 入力, String オプション, 処理 処理) {
+			this.名前 = 名前;
+			this.出力 = 出力;
+			this.入力 = 入力;
+			this.オプション = オプション;
+			this.処理 = 処理;
+		}
+
+		String 指紋() throws IOException {
+			MessageDigest md = ページキャッシュ.sha256();
+			md.update(オプション.getBytes(StandardCharsets.UTF_8));
+			for (Path p : 入力)
+				md.update(("\0" + p + "\0" + Files.size(p) + ":" + Files.getLastModifiedTime(p).toMillis())
+					.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(md.digest());
+		}
+
+		@Override
+		public String toString() {
+			return 名前;
+		}
+	}
+
+	/**
+	 * 実行結果です。
+	 * 失敗にはその変換が失敗したか、依存する変換が失敗したために実行しなかったものを含みます。
+	 */
+	public record 結果(int 実行数, int 省略数, Map<String, Throwable> 失敗) {
+	}
+
+	List<Path> pdf(定義 定義, String 区分, String[] names) {
+		List<Path> result = new ArrayList<>();
+		if (names != null)
+			for (String name : names)
+				result.add(入力ディレクトリ.resolve(定義.年度).resolve(区分).resolve("pdf").resolve(name));
+		return result;
+	}
+
+	static String[] 文字列(List<Path> paths) {
+		return paths.stream().map(Path::toString).toArray(String[]::new);
+	}
+
+	void テキスト変換(List<ジョブ> jobs, 定義 定義, String 区分, String 種類, boolean horizontal, String[] names) {
+		List<Path> inFiles = pdf(定義, 区分, names);
+		if (inFiles.isEmpty())
+			return;
+		IText itext = horizontal ? 横書き : 縦書き;
+		String 名前 = 定義.年度 + "-" + 区分 + "-" + 種類 + ".txt";
+		Path outFile = 出力ディレクトリ.resolve(名前);
+		jobs.add(new ジョブ(名前, outFile, inFiles, "テキスト変換;" + itext.設定.変換オプション(),
+			() -> itext.テキスト変換(outFile.toString(), 文字列(inFiles))));
+	}
+
+	void 様式分割(List<ジョブ> jobs, 定義 定義, String 区分, String 種類, String baseName, String[] names) {
+		List<Path> inFiles = pdf(定義, 区分, names);
+		if (inFiles.isEmpty())
+			return;
+		String 名前 = 定義.年度 + "-" + 区分 + "-" + 種類 + ".txt";
+		Path indexFile = 出力ディレクトリ.resolve(名前);
+		IText itext = 横書き;
+		ジョブ index = new ジョブ(名前, indexFile, inFiles, "様式一覧変換;" + itext.設定.変換オプション(),
+			() -> itext.様式一覧変換(indexFile.toString(), 文字列(inFiles)));
+		Path outDir = 出力ディレクトリ.resolve(定義.年度 + "-" + 区分 + "-" + 種類);
+		List<Path> splitInputs = new ArrayList<>(inFiles);
+		splitInputs.add(indexFile);
+		IText.分割オプション option = 分割オプション;
+		ジョブ split = new ジョブ(outDir.getFileName().toString(), outDir, splitInputs,
+			"ページ分割;" + baseName + ";" + option,
+			() -> {
+				Files.createDirectories(outDir);
+				IText.ページ分割(indexFile.toString(), outDir.toString(), outDir.resolve(baseName).toString(), option);
+			});
+		split.依存.add(index);
+		jobs.add(index);
+		jobs.add(split);
+	}
+
+	/**
+	 * 1つの年度の変換を作成します。
+	 */
+	List<ジョブ> ジョブ一覧(定義 d) {
+		List<ジョブ> jobs = new ArrayList<>();
+		テキスト変換(jobs, d, "i", "kokuji", true, d.医科告示PDF);
+		テキスト変換(jobs, d, "i", "tuti", true, d.医科通知PDF);
+		テキスト変換(jobs, d, "s", "kokuji", true, d.歯科告示PDF);
+		テキスト変換(jobs, d, "s", "tuti", true, d.歯科通知PDF);
+		テキスト変換(jobs, d, "t", "kokuji", true, d.調剤告示PDF);
+		テキスト変換(jobs, d, "t", "tuti", true, d.調剤通知PDF);
+		テキスト変換(jobs, d, "k", "kokuji", false, d.施設基準告示PDF);
+		テキスト変換(jobs, d, "k", "tuti", true, d.施設基準通知PDF);
+		様式分割(jobs, d, "i", "yoshiki", "BESI", d.医科様式PDF);
+		様式分割(jobs, d, "s", "yoshiki", "BESI", d.歯科様式PDF);
+		様式分割(jobs, d, "t", "yoshiki", "BESI", d.調剤様式PDF);
+		様式分割(jobs, d, "k", "kihon", "KIHON-BETTEN7-BESI", d.施設基準基本様式PDF);
+		様式分割(jobs, d, "k", "tokkei", "TOKKEI-BETTEN2-BESI", d.施設基準特掲様式PDF);
+		return jobs;
+	}
+
+	static final Type 状態型 = new TypeToken<Map<String, String>>() {}.getType();
+
+	void 状態読込() throws IOException {
+		状態.clear();
+		try (Reader reader = Files.newBufferedReader(状態ファイル, StandardCharsets.UTF_8)) {
+			Map<String, String> map = new Gson().fromJson(reader, 状態型);
+			if (map != null)
+				状態.putAll(map);
+		} catch (NoSuchFileException e) {
+			// 初回
+		}
+	}
+
+	/**
+	 * 状態ファイルを一時ファイルに書き出してから置き換えます。
+	 */
+	void 状態保存() throws IOException {
+		Path dir = 状態ファイル.toAbsolutePath().getParent();
+		Files.createDirectories(dir);
+		Path temp = Files.createTempFile(dir, "state", ".tmp");
+		try {
+			try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+				synchronized (状態) {
+					new GsonBuilder().setPrettyPrinting().create().toJson(状態, 状態型, writer);
+				}
+			}
+			try {
+				Files.move(temp, 状態ファイル, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, 状態ファイル, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * 定義ファイルを読み込んで変換を実行します。
+	 */
+	public 結果 実行(Path... jsonFiles) throws IOException {
+		List<ジョブ> jobs = new ArrayList<>();
+		for (Path json : jsonFiles)
+			jobs.addAll(ジョブ一覧(定義読込(json)));
+		return 実行(jobs);
+	}
+
+	結果 実行(List<ジョブ> jobs) throws IOException {
+		Files.createDirectories(出力ディレクトリ);
+		状態読込();
+		AtomicInteger 実行数 = new AtomicInteger(), 省略数 = new AtomicInteger();
+		Map<String, Throwable> 失敗 = new LinkedHashMap<>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, 並列度));
+		try {
+			// jobsは依存する変換が先に並んでいる
+			for (ジョブ job : jobs) {
+				CompletableFuture<?>[] deps = job.依存.stream().map(j -> j.future).toArray(CompletableFuture[]::new);
+				job.future = CompletableFuture.allOf(deps).thenRunAsync(() -> {
+					try {
+						if (ジョブ実行(job))
+							実行数.incrementAndGet();
+						else
+							省略数.incrementAndGet();
+					} catch (Exception e) {
+						throw new CompletionException(e);
+					}
+				}, executor);
+			}
+			for (ジョブ job : jobs)
+				try {
+					job.future.join();
+				} catch (CompletionException e) {
+					Throwable cause = e.getCause() instanceof CompletionException c ? c.getCause() : e.getCause();
+					IText.logger.warning(job.名前 + ": " + cause);
+					失敗.put(job.名前, cause);
+				}
+		} finally {
+			IText.shutdown(executor);
+			状態保存();
+		}
+		return new 結果(実行数.get(), 省略数.get(), 失敗);
+	}
+
+	/**
+	 * 指紋が前回と同じで出力が存在する場合は省略します。
+	 * @return 実行した場合はtrueを返します。
+	 */
+	boolean ジョブ実行(ジョブ job) throws Exception {
+		String 指紋 = job.指紋();
+		synchronized (状態) {
+			if (指紋.equals(状態.get(job.名前)) && Files.exists(job.出力))
+				return false;
+			状態.remove(job.名前);
+		}
+		IText.logger.info(job.名前);
+		job.処理.実行();
+		synchronized (状態) {
+			状態.put(job.名前, 指紋);
+		}
+		return true;
+	}
+
+	/**
+	 * 引数は 入力ディレクトリ 出力ディレクトリ 状態ファイル 定義ファイル... です。
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 4)
+			throw new IllegalArgumentException("usage: 入力ディレクトリ 出力ディレクトリ 状態ファイル 定義ファイル...");
+		一括変換 batch = new 一括変換(Path.of(args[0]), Path.of(args[1]), Path.of(args[2]));
+		Path[] jsonFiles = new Path[args.length - 3];
+		for (int i = 3; i < args.length; ++i)
+			jsonFiles[i - 3] = Path.of(args[i]);
+		結果 r = batch.実行(jsonFiles);
+		IText.OUT.printf("実行=%d 省略=%d 失敗=%s%n", r.実行数(), r.省略数(), r.失敗().keySet());
+		if (!r.失敗().isEmpty())
+			System.exit(1);
+	}
+}
@@ -0,0 +1,462 @@
+package saka1029.pdf;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * read()で抽出した行の文字バイグラム(連続する2文字)の転置索引です。
+ * PDFファイルごとに1つの区分ファイルをディレクトリに作成するので、
+ * 1つのPDFを抽出し直したときはその区分だけを作り直します。
+ * 区分ファイルはメモリマップして検索します。
+ * 区分ファイルの名前はPDFファイルのパスのハッシュ値と世代で、作り直すたびに世代を上げた新しい名前で書き出します。
+ * メモリマップしたファイルを置き換えたり削除したりできない環境(Windows)でも、
+ * マップ中のファイルには書き込まずに更新できます。
+ * 古い世代のファイルは削除できるようになった時点で削除します。
+ * 単語に分割しないので、分かち書きのない日本語の部分文字列も検索できます。
+ * 空白を含むバイグラムは索引に登録しません。
+ * スレッドセーフではありません。
+ */
+public class 全文索引 implements Closeable {
+
+	static final int MAGIC = 0x49445831; // "IDX1"
+	static final String 拡張子 = ".idx";
+	/**
+	 * 区分ファイルの名前です。group1は接頭辞、group2は世代です。
+	 */
+	static final Pattern 区分ファイル名 = Pattern.compile("([0-9a-f]{32}-)(\\d+)\\" + 拡張子);
+
+	public final Path ディレクトリ;
+	public final IText itext;
+	final Map<Path, 区分> 区分一覧 = new HashMap<>();
+
+	public 全文索引(Path ディレクトリ, IText itext) throws IOException {
+		this.ディレクトリ = Files.createDirectories(ディレクトリ);
+		this.itext = itext;
+	}
+
+	public record 検索結果(String file, int pageNo, int lineNo, String line) {
+	}
+
+	/**
+	 * PDFファイルの区分ファイル名の接頭辞(パスのハッシュ値 + "-")です。
+	 */
+	static String 接頭辞(String pdf) {
+		byte[] hash = ページキャッシュ.sha256().digest(
+			Path.of(pdf).toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+		return HexFormat.of().formatHex(hash, 0, 16) + "-";
+	}
+
+	static long 世代(Path path) {
+		Matcher m = 区分ファイル名.matcher(path.getFileName().toString());
+		return m.matches() ? Long.parseLong(m.group(2)) : 0;
+	}
+
+	/**
+	 * 区分ファイルの次の世代のパスを返します。
+	 * @param path 現在の区分ファイルを指定します。ない場合はnullを指定します。
+	 */
+	Path 次の区分(String 接頭辞, Path path) {
+		return ディレクトリ.resolve(接頭辞 + (path == null ? 1 : 世代(path) + 1) + 拡張子);
+	}
+
+	/**
+	 * 接頭辞ごとに最新の世代の区分ファイルを返します。
+	 * 古い世代のファイルは削除を試みます。
+	 */
+	Map<String, Path> 最新区分() throws IOException {
+		Map<String, Path> latest = new HashMap<>();
+		List<Path> old = new ArrayList<>();
+		try (Stream<Path> files = Files.list(ディレクトリ)) {
+			for (Path path : (Iterable<Path>) files::iterator) {
+				Matcher m = 区分ファイル名.matcher(path.getFileName().toString());
+				if (!m.matches())
+					continue;
+				Path other = latest.get(m.group(1));
+				if (other == null || 世代(other) < 世代(path)) {
+					latest.put(m.group(1), path);
+					if (other != null)
+						old.add(other);
+				} else
+					old.add(path);
+			}
+		}
+		for (Path path : old)
+			区分削除(path);
+		return latest;
+	}
+
+	/**
+	 * 区分ファイルを削除します。
+	 * メモリマップしているため削除できない場合はfalseを返し、次に最新区分()を呼び出したときに再び削除を試みます。
+	 */
+	boolean 区分削除(Path path) {
+		区分一覧.remove(path);
+		try {
+			Files.deleteIfExists(path);
+			return true;
+		} catch (IOException e) {
+			IText.logger.fine("区分ファイルを削除できません: " + path + ": " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * 区分を作成したときのPDFファイルとオプションの状態です。
+	 * 一致する場合は作り直しを省略します。
+	 * read()で抽出する行に影響するオプションをすべて含みます。
+	 */
+	String 指紋(String pdf) throws IOException {
+		Path path = Path.of(pdf);
+		抽出設定 設定 = itext.設定;
+		return "size=%d;mtime=%d;%s;組版=%s,%s,%s,%s,%s;標本ページ数=%s;文書属性テンプレート=%s;抽出方式=%s".formatted(
+			Files.size(path), Files.getLastModifiedTime(path).toMillis(), 設定.キャッシュオプション(),
+			設定.行併合範囲割合, 設定.ルビ割合, 設定.行高さ規定値, 設定.行間隔規定値, 設定.ルビパターン,
+			設定.標本ページ数, 設定.文書属性テンプレート, 設定.抽出方式);
+	}
+
+	/**
+	 * PDFファイルを索引に登録します。
+	 * 登録済みで、PDFファイルの大きさ、更新日時およびオプションが変わっていないファイルは読み込みません。
+	 * @return 区分を作り直したファイルの数を返します。
+	 */
+	public int 更新(String... pdfs) throws IOException {
+		Map<String, Path> latest = 最新区分();
+		int count = 0;
+		for (String pdf : pdfs) {
+			String 接頭辞 = 接頭辞(pdf);
+			Path path = latest.get(接頭辞);
+			String 指紋 = 指紋(pdf);
+			区分 current = path == null ? null : 区分(path);
+			if (current != null && current.file.equals(pdf) && current.指紋.equals(指紋))
+				continue;
+			Path next = 次の区分(接頭辞, path);
+			書出(next, pdf, 指紋, true);
+			latest.put(接頭辞, next);
+			if (path != null)
+				区分削除(path);
+			++count;
+		}
+		return count;
+	}
+
+	/**
+	 * PDFファイルを索引から削除します。
+	 * 区分ファイルを削除できない場合は、行のない区分を次の世代として書き出します。
+	 */
+	public void 削除(String pdf) throws IOException {
+		String 接頭辞 = 接頭辞(pdf);
+		Path path = 最新区分().get(接頭辞);
+		if (path != null && !区分削除(path))
+			書出(次の区分(接頭辞, path), pdf, "", false);
+	}
+
+	@Override
+	public void close() {
+		区分一覧.clear();
+	}
+
+	/**
+	 * queryを含む行を検索します。
+	 * 結果はPDFファイル名の順、各ファイル内では行の出現順です。
+	 */
+	public List<検索結果> 検索(String query) throws IOException {
+		int[] keys = バイグラム(query);
+		List<区分> segments = new ArrayList<>();
+		for (Path path : 最新区分().values()) {
+			区分 s = 区分(path);
+			if (s != null && s.行数 > 0)
+				segments.add(s);
+		}
+		segments.sort(Comparator.comparing(s -> s.file));
+		List<検索結果> result = new ArrayList<>();
+		for (区分 s : segments)
+			s.検索(query, keys, result);
+		return result;
+	}
+
+	区分 区分(Path path) throws IOException {
+		区分 s = 区分一覧.get(path);
+		if (s == null) {
+			try {
+				s = new 区分(path);
+			} catch (NoSuchFileException e) {
+				return null;
+			}
+			区分一覧.put(path, s);
+		}
+		return s;
+	}
+
+	static boolean 空白(char c) {
+		return Character.isWhitespace(c) || Character.isSpaceChar(c);
+	}
+
+	/**
+	 * 文字列のバイグラムを重複を除いて返します。
+	 */
+	static int[] バイグラム(String s) {
+		int[] keys = new int[Math.max(0, s.length() - 1)];
+		int n = 0;
+		for (int i = 0; i + 1 < s.length(); ++i) {
+			char a = s.charAt(i), b = s.charAt(i + 1);
+			if (!空白(a) && !空白(b))
+				keys[n++] = a << 16 | b;
+		}
+		keys = Arrays.copyOf(keys, n);
+		Arrays.sort(keys);
+		return Arrays.stream(keys).distinct().toArray();
+	}
+
+	/**
+	 * 伸長可能なint配列です。
+	 */
+	static class 整数列 {
+		int[] a = new int[4];
+		int size = 0;
+
+		void add(int v) {
+			if (size == a.length)
+				a = Arrays.copyOf(a, size * 2);
+			a[size++] = v;
+		}
+
+		int last() {
+			return size == 0 ? -1 : a[size - 1];
+		}
+	}
+
+	/**
+	 * PDFファイルを読み込んで区分ファイルを書き出します。
+	 * 読込がfalseの場合は行のない区分ファイルを書き出します。
+	 * <pre>
+	 * int MAGIC
+	 * int 長さ, byte[] PDFファイル名(UTF-8)
+	 * int 長さ, byte[] 指紋(UTF-8)
+	 * int 行数, int 本文バイト数, int バイグラム数, int 出現バイト数
+	 * int[行数] ページ番号
+	 * int[行数] 行番号
+	 * int[行数 + 1] 本文の各行の開始位置
+	 * int[バイグラム数] バイグラム(昇順)
+	 * int[バイグラム数 + 1] 出現の開始位置
+	 * byte[本文バイト数] 本文(UTF-8)
+	 * byte[出現バイト数] 出現(行の通し番号の差分の可変長整数)
+	 * </pre>
+	 */
+	void 書出(Path path, String pdf, String 指紋, boolean 読込) throws IOException {
+		整数列 pageNos = new 整数列(), lineNos = new 整数列(), 行位置 = new 整数列();
+		ByteArrayOutputStream 本文 = new ByteArrayOutputStream();
+		Map<Integer, 整数列> 出現 = new HashMap<>();
+		if (読込)
+			itext.read(pdf, (pageNo, lines) -> {
+				int lineNo = 0;
+				for (String line : lines) {
+					int id = pageNos.size;
+					pageNos.add(pageNo);
+					lineNos.add(++lineNo);
+					行位置.add(本文.size());
+					本文.write(line.getBytes(StandardCharsets.UTF_8));
+					for (int key : バイグラム(line)) {
+						整数列 list = 出現.computeIfAbsent(key, k -> new 整数列());
+						if (list.last() != id)
+							list.add(id);
+					}
+				}
+			});
+		行位置.add(本文.size());
+		int[] keys = 出現.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+		ByteArrayOutputStream postings = new ByteArrayOutputStream();
+		int[] 出現位置 = new int[keys.length + 1];
+		for (int i = 0; i < keys.length; ++i) {
+			出現位置[i] = postings.size();
+			整数列 list = 出現.get(keys[i]);
+			for (int j = 0, prev = 0; j < list.size; prev = list.a[j++])
+				可変長書出(postings, list.a[j] - prev);
+		}
+		出現位置[keys.length] = postings.size();
+		Path temp = Files.createTempFile(ディレクトリ, path.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+				文字列書出(out, pdf);
+				文字列書出(out, 指紋);
+				out.writeInt(pageNos.size);
+				out.writeInt(本文.size());
+				out.writeInt(keys.length);
+				out.writeInt(postings.size());
+				整数書出(out, pageNos.a, pageNos.size);
+				整数書出(out, lineNos.a, lineNos.size);
+				整数書出(out, 行位置.a, 行位置.size);
+				整数書出(out, keys, keys.length);
+				整数書出(out, 出現位置, 出現位置.length);
+				本文.writeTo(out);
+				postings.writeTo(out);
+			}
+			try {
+				Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	static void 文字列書出(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static void 整数書出(DataOutputStream out, int[] a, int size) throws IOException {
+		for (int i = 0; i < size; ++i)
+			out.writeInt(a[i]);
+	}
+
+	static void 可変長書出(ByteArrayOutputStream out, int v) {
+		while ((v & ~0x7F) != 0) {
+			out.write(v & 0x7F | 0x80);
+			v >>>= 7;
+		}
+		out.write(v);
+	}
+
+	/**
+	 * メモリマップした1つのPDFファイルの区分です。
+	 */
+	static class 区分 {
+		final MappedByteBuffer buffer;
+		final String file, 指紋;
+		final int 行数, バイグラム数;
+		final int ページ番号表, 行番号表, 行位置表, バイグラム表, 出現位置表, 本文, 出現;
+
+		区分(Path path) throws IOException {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			if (buffer.getInt(0) != MAGIC)
+				throw new IOException("bad magic: " + path);
+			int p = 4;
+			file = 文字列(buffer, p);
+			p += 4 + buffer.getInt(p);
+			指紋 = 文字列(buffer, p);
+			p += 4 + buffer.getInt(p);
+			行数 = buffer.getInt(p);
+			int 本文バイト数 = buffer.getInt(p + 4);
+			バイグラム数 = buffer.getInt(p + 8);
+			p += 16;
+			ページ番号表 = p;
+			行番号表 = ページ番号表 + 4 * 行数;
+			行位置表 = 行番号表 + 4 * 行数;
+			バイグラム表 = 行位置表 + 4 * (行数 + 1);
+			出現位置表 = バイグラム表 + 4 * バイグラム数;
+			本文 = 出現位置表 + 4 * (バイグラム数 + 1);
+			出現 = 本文 + 本文バイト数;
+		}
+
+		static String 文字列(ByteBuffer buffer, int p) {
+			byte[] bytes = new byte[buffer.getInt(p)];
+			buffer.get(p + 4, bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		String 行(int id) {
+			int start = buffer.getInt(行位置表 + 4 * id), end = buffer.getInt(行位置表 + 4 * (id + 1));
+			byte[] bytes = new byte[end - start];
+			buffer.get(本文 + start, bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * バイグラムの出現する行の通し番号を返します。
+		 */
+		int[] 出現(int key) {
+			int lo = 0, hi = バイグラム数 - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1, k = buffer.getInt(バイグラム表 + 4 * mid);
+				if (k < key)
+					lo = mid + 1;
+				else if (k > key)
+					hi = mid - 1;
+				else {
+					int p = 出現 + buffer.getInt(出現位置表 + 4 * mid), end = 出現 + buffer.getInt(出現位置表 + 4 * (mid + 1));
+					int[] ids = new int[end - p];
+					int n = 0, id = 0;
+					while (p < end) {
+						int v = 0;
+						for (int shift = 0; ; shift += 7) {
+							byte b = buffer.get(p++);
+							v |= (b & 0x7F) << shift;
+							if (b >= 0)
+								break;
+						}
+						ids[n++] = id += v;
+					}
+					return Arrays.copyOf(ids, n);
+				}
+			}
+			return new int[0];
+		}
+
+		/**
+		 * すべてのバイグラムが出現する行を求め、queryを含む行だけを結果に追加します。
+		 * バイグラムがない場合はすべての行を調べます。
+		 */
+		void 検索(String query, int[] keys, List<検索結果> result) {
+			int[] ids = null;
+			for (int key : keys) {
+				int[] list = 出現(key);
+				ids = ids == null ? list : 共通(ids, list);
+				if (ids.length == 0)
+					return;
+			}
+			if (ids == null) {
+				ids = new int[行数];
+				Arrays.setAll(ids, i -> i);
+			}
+			for (int id : ids) {
+				String line = 行(id);
+				if (line.contains(query))
+					result.add(new 検索結果(file, buffer.getInt(ページ番号表 + 4 * id), buffer.getInt(行番号表 + 4 * id), line));
+			}
+		}
+
+		static int[] 共通(int[] a, int[] b) {
+			int[] c = new int[Math.min(a.length, b.length)];
+			int i = 0, j = 0, n = 0;
+			while (i < a.length && j < b.length)
+				if (a[i] < b[j])
+					++i;
+				else if (a[i] > b[j])
+					++j;
+				else {
+					c[n++] = a[i];
+					++i;
+					++j;
+				}
+			return Arrays.copyOf(c, n);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package saka1029.pdf;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.itextpdf.text.DocumentException;
+
+/**
+ * 1つのインスタンスを複数のスレッドで共有できるITextです。
+ * オプションは作成時の抽出設定から変更できません。
+ * 作業領域(行の要素番号の配列、StringBuilder、ルビパターンのMatcherなど)は
+ * 呼び出しごとに作成してページをまたいで再利用するので、
+ * 呼び出しの間でロックもThreadLocalも使わず、仮想スレッドからも呼び出せます。
+ * ただし抽出設定に指定した計測、キャッシュ、debugElementは同時に呼び出されるので、
+ * スレッドセーフなものを指定する必要があります。
+ */
+public final class 共有IText {
+
+	public final 抽出設定 設定;
+	/**
+	 * ITextのオプションは作成後に変更できないので、メソッドを同時に呼び出しても安全です。
+	 * 外部には公開しません。
+	 */
+	private final IText itext;
+
+	public 共有IText(抽出設定 設定) {
+		this.設定 = 設定;
+		this.itext = new IText(設定);
+	}
+
+	public List<List<String>> read(String path) throws IOException {
+		return itext.read(path);
+	}
+
+	/**
+	 * @see IText#read(String, int, int)
+	 */
+	public List<List<String>> read(String path, int fromPage, int toPage) throws IOException {
+		return itext.read(path, fromPage, toPage);
+	}
+
+	/**
+	 * @see IText#read(String, IText.ページ出力)
+	 */
+	public void read(String path, IText.ページ出力 output) throws IOException {
+		itext.read(path, output);
+	}
+
+	public void テキスト変換(String outFile, String... inFiles) throws IOException {
+		itext.テキスト変換(outFile, inFiles);
+	}
+
+	public void 様式一覧変換(String outFile, String... inFiles) throws IOException {
+		itext.様式一覧変換(outFile, inFiles);
+	}
+
+	/**
+	 * @see IText#様式分割(String, String, IText.分割オプション, String...)
+	 */
+	public List<様式> 様式分割(String indexFile, String outFilePrefix, IText.分割オプション option, String... inFiles) throws IOException, DocumentException {
+		return itext.様式分割(indexFile, outFilePrefix, option, inFiles);
+	}
+}
@@ -0,0 +1,223 @@
+package saka1029.pdf;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 文字列を書式化せずに符号化してファイルに書き出します。
+ * 文字列は文字バッファにコピーしてからCharsetEncoderで直接バッファに符号化し、
+ * 直接バッファがいっぱいになったらFileChannelに書き出します。
+ * 直接バッファはファイルを閉じるときにプールに戻し、次に開くファイルで再利用します。
+ * 文字バッファに残ったサロゲートペアの前半は次の文字列と合わせて符号化します。
+ * 符号化できない文字はOutputStreamWriterと同じく置換文字に置き換えるので、
+ * 出力はOutputStreamWriterで書き出したものと同じです。
+ * ファイル名が.gzで終わる場合は符号化したバイト列をDeflaterで圧縮してgzip形式で書き出します。
+ * スレッドセーフではありません。
+ */
+public class 出力バッファ implements Appendable, Flushable, Closeable {
+
+	static final int バッファサイズ = 1 << 16;
+	static final Queue<ByteBuffer> プール = new ConcurrentLinkedQueue<>();
+
+	static ByteBuffer 借りる() {
+		ByteBuffer buffer = プール.poll();
+		return buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(バッファサイズ);
+	}
+
+	final String outFile;
+	final FileChannel channel;
+	final CharsetEncoder encoder;
+	final CharBuffer chars = CharBuffer.allocate(8192);
+	final ByteBuffer bytes = 借りる();
+	final 圧縮 圧縮;
+	final 計測 計測;
+	long バイト数 = 0, nanos = 0;
+	boolean closed = false;
+
+	/**
+	 * @param 計測 nullでない場合は閉じたときに書き込んだバイト数と時間を報告します。
+	 */
+	public 出力バッファ(String outFile, Charset charset, 計測 計測) throws IOException {
+		this.outFile = outFile;
+		this.計測 = 計測;
+		this.encoder = charset.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.channel = FileChannel.open(Path.of(outFile),
+			StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		this.圧縮 = outFile.endsWith(".gz") ? new 圧縮() : null;
+	}
+
+	@Override
+	public 出力バッファ append(CharSequence csq) throws IOException {
+		if (csq == null)
+			csq = "null";
+		return append(csq, 0, csq.length());
+	}
+
+	@Override
+	public 出力バッファ append(CharSequence csq, int start, int end) throws IOException {
+		if (csq == null)
+			csq = "null";
+		while (start < end) {
+			if (!chars.hasRemaining())
+				符号化(false);
+			int n = Math.min(end - start, chars.remaining());
+			int offset = chars.arrayOffset() + chars.position();
+			if (csq instanceof String s)
+				s.getChars(start, start + n, chars.array(), offset);
+			else if (csq instanceof StringBuilder s)
+				s.getChars(start, start + n, chars.array(), offset);
+			else
+				for (int i = 0; i < n; ++i)
+					chars.array()[offset + i] = csq.charAt(start + i);
+			chars.position(chars.position() + n);
+			start += n;
+		}
+		return this;
+	}
+
+	@Override
+	public 出力バッファ append(char c) throws IOException {
+		if (!chars.hasRemaining())
+			符号化(false);
+		chars.put(c);
+		return this;
+	}
+
+	/**
+	 * 文字バッファの文字を符号化します。
+	 * 最後でない場合、文字バッファの末尾のサロゲートペアの前半は残します。
+	 */
+	void 符号化(boolean 最後) throws IOException {
+		chars.flip();
+		while (encoder.encode(chars, bytes, 最後).isOverflow())
+			書出();
+		chars.compact();
+	}
+
+	/**
+	 * 直接バッファの内容をファイル(圧縮する場合はDeflater)に渡して空にします。
+	 */
+	void 書出() throws IOException {
+		bytes.flip();
+		if (圧縮 != null)
+			圧縮.書出(bytes);
+		else
+			書込(bytes);
+		bytes.clear();
+	}
+
+	void 書込(ByteBuffer buffer) throws IOException {
+		long start = 計測 != null ? System.nanoTime() : 0;
+		バイト数 += buffer.remaining();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		if (計測 != null)
+			nanos += System.nanoTime() - start;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		符号化(false);
+		書出();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			符号化(true);
+			while (encoder.flush(bytes).isOverflow())
+				書出();
+			書出();
+			if (圧縮 != null)
+				圧縮.終了();
+		} finally {
+			long start = 計測 != null ? System.nanoTime() : 0;
+			try {
+				channel.close();
+			} finally {
+				if (圧縮 != null)
+					圧縮.解放();
+				プール.add(bytes);
+				if (計測 != null) {
+					nanos += System.nanoTime() - start;
+					計測.書込(outFile, バイト数, nanos);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 符号化したバイト列をgzip形式(RFC 1952)に圧縮します。
+	 * ヘッダーと圧縮レベルはGZIPOutputStreamと同じです。
+	 */
+	class 圧縮 {
+		static final byte[] ヘッダー = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+		static final byte[] 空 = new byte[0];
+
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		final CRC32 crc = new CRC32();
+		final ByteBuffer out = 借りる();
+
+		圧縮() {
+			out.put(ヘッダー);
+		}
+
+		void 書出(ByteBuffer input) throws IOException {
+			crc.update(input.duplicate());
+			deflater.setInput(input);
+			while (!deflater.needsInput()) {
+				deflater.deflate(out);
+				if (!out.hasRemaining())
+					送出();
+			}
+			// Deflaterはinputを参照し続けるので、再利用するinputのclear()を入力と見なさないように外す
+			deflater.setInput(空);
+		}
+
+		void 送出() throws IOException {
+			out.flip();
+			書込(out);
+			out.clear();
+		}
+
+		void 終了() throws IOException {
+			deflater.finish();
+			while (!deflater.finished()) {
+				deflater.deflate(out);
+				if (!out.hasRemaining())
+					送出();
+			}
+			if (out.remaining() < 8)
+				送出();
+			out.order(ByteOrder.LITTLE_ENDIAN);
+			out.putInt((int) crc.getValue());
+			out.putInt((int) deflater.getBytesRead());
+			out.order(ByteOrder.BIG_ENDIAN);
+			送出();
+		}
+
+		void 解放() {
+			deflater.end();
+			プール.add(out);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package saka1029.pdf;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.itextpdf.text.pdf.PdfReader;
+
+/**
+ * PDFのページから文字列とその位置を抽出する方式です。
+ * 抽出した文字列はPDFのユーザー空間(左下原点)の座標で受取に渡し、
+ * ページ座標への変換、行分割、組版はITextが行います。
+ * 方式によって抽出の速さと使用するメモリ量が異なります。
+ * 要素はどちらの方式も表示する文字列(TjやTJの各文字列)ごとに作成します。
+ */
+public interface 抽出器 {
+
+	/**
+	 * iText(PdfReaderContentParser)で抽出します。既定値です。
+	 */
+	抽出器 ITEXT = new iText抽出器(true);
+	/**
+	 * ITEXTと同じですが、文字列の高さをキャッシュせずに毎回計算します。
+	 * 結果はITEXTと同じで、高さのキャッシュの確認に使用します。
+	 */
+	抽出器 ITEXT_高さ計算 = new iText抽出器(false);
+	/**
+	 * PDFBox(PDFTextStripper)で抽出します。
+	 */
+	抽出器 PDFBOX = new PDFBox抽出器();
+
+	/**
+	 * PDFファイルを開きます。
+	 * @param 部分読込 trueの場合は必要な部分だけを読み込みます。
+	 */
+	文書 開く(String path, boolean 部分読込) throws IOException;
+
+	/**
+	 * メモリ上のPDFファイルの内容を開きます。
+	 * 1つのファイルをスレッドごとに開く場合に使用します。
+	 */
+	文書 開く(byte[] bytes) throws IOException;
+
+	/**
+	 * 開いたPDFファイルです。スレッドセーフではありません。
+	 */
+	interface 文書 extends Closeable {
+		int ページ数();
+
+		/**
+		 * ページの文字列を順に受取に渡します。
+		 */
+		void 抽出(int pageNo, 受取 受取) throws IOException;
+
+		/**
+		 * ページのCropBoxをユーザー空間の座標で返します。
+		 * 抽出する文字列の座標と同じく、ページの回転は適用しません。
+		 */
+		枠 枠(int pageNo) throws IOException;
+
+		/**
+		 * 抽出の終わったページのメモリを解放します。
+		 */
+		default void 解放(int pageNo) {
+		}
+
+		/**
+		 * iTextで開いている場合はPdfReaderを返します。
+		 * ページキャッシュのキーの計算に使用します。
+		 */
+		default PdfReader reader() {
+			return null;
+		}
+
+		@Override
+		void close();
+	}
+
+	/**
+	 * ページの矩形です。座標はユーザー空間(左下原点)です。
+	 */
+	record 枠(float 左, float 下, float 右, float 上) {
+	}
+
+	/**
+	 * 抽出した文字列を受け取ります。
+	 */
+	interface 受取 {
+		/**
+		 * ベースラインの外接矩形から解析の対象外であるかを判定します。
+		 * 対象外の文字列はアセントやディセントを計算せずに読み飛ばします。
+		 */
+		boolean 対象外(float x, float y, float width);
+
+		/**
+		 * @param x ベースラインの外接矩形のx座標です。
+		 * @param y ベースラインの外接矩形のy座標です。
+		 * @param width ベースラインの外接矩形の幅です。
+		 * @param height アセントラインとディセントラインの外接矩形のy座標の差です。
+		 */
+		void 文字列(String text, float x, float y, float width, float height);
+	}
+}
@@ -0,0 +1,285 @@
+package saka1029.pdf;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+import com.itextpdf.text.Version;
+
+/**
+ * ITextのオプションを変更できないようにまとめたものです。
+ * Builderで作成し、new IText(設定)または共有ITextに渡します。
+ * 既定値はBuilderのフィールドの初期値です。
+ */
+public final class 抽出設定 {
+
+	public final boolean horizontal;
+	public final String 改行文字;
+	public final Charset 出力文字セット;
+	public final float 行併合範囲割合;
+	public final float ルビ割合;
+	public final float 行高さ規定値;
+	public final float 行間隔規定値;
+	public final float ゼロ幅左シフト;
+	/**
+	 * ルビの文字列を判定する正規表現です。
+	 * 既定値のままの場合は正規表現を使わずに文字種で判定します。
+	 */
+	public final Pattern ルビパターン;
+	/**
+	 * テキスト変換でページ番号とみなす行の正規表現です。
+	 * 既定値のままの場合は文字の種類で候補を絞り込んでから照合します。
+	 */
+	public final Pattern ページ番号パターン;
+	/**
+	 * 共有ITextで使う場合は複数のスレッドから同時に呼び出されます。
+	 */
+	public final IText.DebugElement debugElement;
+	/**
+	 * ページ解析の並列度を指定します。
+	 * 2以上を指定するとファイルの内容を一度だけ読み込み、
+	 * スレッドごとに開いた文書で各ページを並列に解析します。
+	 */
+	public final int 並列度;
+	/**
+	 * trueの場合はPDFファイルをメモリマップして、
+	 * ページやオブジェクトを参照したときに読み込みます。
+	 * 解析の終わったページは解放するので、
+	 * 使用するメモリ量はファイルの大きさではなく処理中のページに比例します。
+	 */
+	public final boolean 部分読込;
+	/**
+	 * ページの解析結果を保存するキャッシュを指定します。
+	 * 指定するとキャッシュにあるページは解析を省略します。
+	 */
+	public final ページキャッシュ キャッシュ;
+	/**
+	 * trueの場合は解析時に連続するグリフを1つの要素に連結します。
+	 * 直前の要素とy座標、高さが同じで、x座標が直前の要素の右端に一致し、
+	 * どちらもゼロ幅左シフトしていない場合に連結します。
+	 * 連結しても行の文字列の空白の数は変わりませんが、
+	 * 併合した別の行の要素が連結した範囲の途中にある場合は要素の順序が変わります。
+	 * DebugElementには連結した要素が渡されます。
+	 */
+	public final boolean グリフ結合;
+	/**
+	 * 処理段階ごとの時間と件数を受け取る計測を指定します。
+	 * nullの場合は計測しません。
+	 * 共有ITextで使う場合は計測.集計のようにスレッドセーフな計測を指定します。
+	 */
+	public final 計測 計測;
+	/**
+	 * ページから文字列とその位置を抽出する方式を指定します。
+	 * 抽出以降の行分割、統計、組版はどの方式でも同じです。
+	 * ページキャッシュはiTextの場合だけ使用します。
+	 */
+	public final 抽出器 抽出方式;
+	/**
+	 * 文書属性の既定値を指定します。
+	 * 指定すると統計のためのページ解析を省略し、
+	 * 解析したページから順にページ出力に渡します。
+	 */
+	public final IText.文書属性 文書属性テンプレート;
+	/**
+	 * 文書属性を先頭から指定したページ数だけで求めます。
+	 * 0の場合は文書全体から求めます。
+	 */
+	public final int 標本ページ数;
+	/**
+	 * trueの場合は統計用と出力用の2回ページを解析します。
+	 * 文書全体から求めた文書属性を使いながら、
+	 * 使用するメモリ量をページ数に依存しないようにします。
+	 */
+	public final boolean 二段階解析;
+	/**
+	 * テキスト変換で同時に変換する入力ファイルの数を指定します。
+	 * 2以上を指定すると入力ファイルを並行して変換し、引数の順に出力します。
+	 * 変換済みで出力待ちのファイルは最大でこの数だけメモリに保持します。
+	 */
+	public final int ファイル並列度;
+	public final int 様式名出現最大行;
+	/**
+	 * NFKD正規化した行から様式を検出する正規表現です。
+	 * 既定値のままの場合は先頭の文字で候補を絞り込み、候補の行だけを正規化して照合します。
+	 */
+	public final Pattern 様式IDパターン;
+	/**
+	 * 様式一覧変換で各ページのCropBoxの上端(縦書きの場合は右端)から解析する領域の高さ(ポイント)を指定します。
+	 * ページの大きさや向きが異なっても各ページの上端から測ります。
+	 * 0より大きい値を指定すると、y座標がこの値未満の要素だけを解析し、
+	 * 各ページの先頭の様式名出現最大行 + 1行だけを組版します。
+	 * 文書属性は文書属性テンプレートを指定しない場合はこの領域の要素だけから求めるので、
+	 * 全体を解析した場合と行頭の空白や行の併合が異なることがあります。
+	 * 様式IDパターンは行頭の空白を無視するので、通常は様式の検出結果に影響しません。
+	 * 0の場合はページ全体を解析します。
+	 */
+	public final float 様式見出し領域;
+
+	抽出設定(Builder b) {
+		this.horizontal = b.horizontal;
+		this.改行文字 = b.改行文字;
+		this.出力文字セット = b.出力文字セット;
+		this.行併合範囲割合 = b.行併合範囲割合;
+		this.ルビ割合 = b.ルビ割合;
+		this.行高さ規定値 = b.行高さ規定値;
+		this.行間隔規定値 = b.行間隔規定値;
+		this.ゼロ幅左シフト = b.ゼロ幅左シフト;
+		this.ルビパターン = b.ルビパターン;
+		this.ページ番号パターン = b.ページ番号パターン;
+		this.debugElement = b.debugElement;
+		this.並列度 = b.並列度;
+		this.部分読込 = b.部分読込;
+		this.キャッシュ = b.キャッシュ;
+		this.グリフ結合 = b.グリフ結合;
+		this.計測 = b.計測;
+		this.抽出方式 = b.抽出方式;
+		this.文書属性テンプレート = b.文書属性テンプレート;
+		this.標本ページ数 = b.標本ページ数;
+		this.二段階解析 = b.二段階解析;
+		this.ファイル並列度 = b.ファイル並列度;
+		this.様式名出現最大行 = b.様式名出現最大行;
+		this.様式IDパターン = b.様式IDパターン;
+		this.様式見出し領域 = b.様式見出し領域;
+	}
+
+	/**
+	 * 既定値のBuilderを返します。
+	 */
+	public static Builder builder(boolean horizontal) {
+		return new Builder(horizontal);
+	}
+
+	/**
+	 * 既定値の抽出設定を返します。
+	 */
+	public static 抽出設定 既定(boolean horizontal) {
+		return builder(horizontal).build();
+	}
+
+	/**
+	 * この設定と同じオプションのBuilderを返します。
+	 */
+	public Builder toBuilder() {
+		return new Builder(this);
+	}
+
+	/**
+	 * 解析結果に影響するオプションを文字列で返します。
+	 * ページキャッシュのキーの一部になります。
+	 */
+	String キャッシュオプション() {
+		return "iText=%s;horizontal=%s;ゼロ幅左シフト=%s;グリフ結合=%s;PAGE=%sx%s".formatted(
+			Version.getInstance().getRelease(), horizontal, ゼロ幅左シフト, グリフ結合, IText.PAGE_WIDTH, IText.PAGE_HEIGHT);
+	}
+
+	/**
+	 * テキスト変換と様式一覧変換の出力に影響するオプションを文字列で返します。
+	 * 一括変換で前回の出力を再利用できるかの判定に使います。
+	 */
+	public String 変換オプション() {
+		return キャッシュオプション() + (";改行文字=%s;出力文字セット=%s;行併合範囲割合=%s;ルビ割合=%s;行高さ規定値=%s;行間隔規定値=%s"
+			+ ";ルビパターン=%s;ページ番号パターン=%s;文書属性テンプレート=%s;標本ページ数=%s"
+			+ ";様式名出現最大行=%s;様式IDパターン=%s;様式見出し領域=%s;抽出方式=%s").formatted(
+			改行文字.replace("\r", "\\r").replace("\n", "\\n"), 出力文字セット, 行併合範囲割合, ルビ割合, 行高さ規定値, 行間隔規定値,
+			ルビパターン, ページ番号パターン, 文書属性テンプレート, 標本ページ数,
+			様式名出現最大行, 様式IDパターン, 様式見出し領域, 抽出方式);
+	}
+
+	@Override
+	public String toString() {
+		return 変換オプション();
+	}
+
+	/**
+	 * 抽出設定を作成します。
+	 * フィールドの初期値が各オプションの既定値です。
+	 * Builder自体はスレッドセーフではありません。
+	 */
+	public static final class Builder {
+		boolean horizontal;
+		String 改行文字 = IText.既定改行文字;
+		Charset 出力文字セット = StandardCharsets.UTF_8;
+		float 行併合範囲割合 = 0.6F;
+		float ルビ割合 = 0.6F;
+		float 行高さ規定値 = 10F;
+		float 行間隔規定値 = 14F;
+		float ゼロ幅左シフト = 8F;
+		Pattern ルビパターン = IText.既定ルビパターン;
+		Pattern ページ番号パターン = IText.既定ページ番号パターン;
+		IText.DebugElement debugElement = null;
+		int 並列度 = 1;
+		boolean 部分読込 = false;
+		ページキャッシュ キャッシュ = null;
+		boolean グリフ結合 = false;
+		計測 計測 = null;
+		抽出器 抽出方式 = 抽出器.ITEXT;
+		IText.文書属性 文書属性テンプレート = null;
+		int 標本ページ数 = 0;
+		boolean 二段階解析 = false;
+		int ファイル並列度 = 1;
+		int 様式名出現最大行 = 3;
+		Pattern 様式IDパターン = IText.既定様式IDパターン;
+		float 様式見出し領域 = 0F;
+
+		Builder(boolean horizontal) {
+			this.horizontal = horizontal;
+		}
+
+		Builder(抽出設定 s) {
+			horizontal = s.horizontal;
+			改行文字 = s.改行文字;
+			出力文字セット = s.出力文字セット;
+			行併合範囲割合 = s.行併合範囲割合;
+			ルビ割合 = s.ルビ割合;
+			行高さ規定値 = s.行高さ規定値;
+			行間隔規定値 = s.行間隔規定値;
+			ゼロ幅左シフト = s.ゼロ幅左シフト;
+			ルビパターン = s.ルビパターン;
+			ページ番号パターン = s.ページ番号パターン;
+			debugElement = s.debugElement;
+			並列度 = s.並列度;
+			部分読込 = s.部分読込;
+			キャッシュ = s.キャッシュ;
+			グリフ結合 = s.グリフ結合;
+			計測 = s.計測;
+			抽出方式 = s.抽出方式;
+			文書属性テンプレート = s.文書属性テンプレート;
+			標本ページ数 = s.標本ページ数;
+			二段階解析 = s.二段階解析;
+			ファイル並列度 = s.ファイル並列度;
+			様式名出現最大行 = s.様式名出現最大行;
+			様式IDパターン = s.様式IDパターン;
+			様式見出し領域 = s.様式見出し領域;
+		}
+
+		public Builder horizontal(boolean horizontal) { this.horizontal = horizontal; return this; }
+		public Builder 改行文字(String 改行文字) { this.改行文字 = Objects.requireNonNull(改行文字); return this; }
+		public Builder 出力文字セット(Charset 出力文字セット) { this.出力文字セット = Objects.requireNonNull(出力文字セット); return this; }
+		public Builder 行併合範囲割合(float 行併合範囲割合) { this.行併合範囲割合 = 行併合範囲割合; return this; }
+		public Builder ルビ割合(float ルビ割合) { this.ルビ割合 = ルビ割合; return this; }
+		public Builder 行高さ規定値(float 行高さ規定値) { this.行高さ規定値 = 行高さ規定値; return this; }
+		public Builder 行間隔規定値(float 行間隔規定値) { this.行間隔規定値 = 行間隔規定値; return this; }
+		public Builder ゼロ幅左シフト(float ゼロ幅左シフト) { this.ゼロ幅左シフト = ゼロ幅左シフト; return this; }
+		public Builder ルビパターン(Pattern ルビパターン) { this.ルビパターン = Objects.requireNonNull(ルビパターン); return this; }
+		public Builder ページ番号パターン(Pattern ページ番号パターン) { this.ページ番号パターン = Objects.requireNonNull(ページ番号パターン); return this; }
+		public Builder debugElement(IText.DebugElement debugElement) { this.debugElement = debugElement; return this; }
+		public Builder 並列度(int 並列度) { this.並列度 = 並列度; return this; }
+		public Builder 部分読込(boolean 部分読込) { this.部分読込 = 部分読込; return this; }
+		public Builder キャッシュ(ページキャッシュ キャッシュ) { this.キャッシュ = キャッシュ; return this; }
+		public Builder グリフ結合(boolean グリフ結合) { this.グリフ結合 = グリフ結合; return this; }
+		public Builder 計測(計測 計測) { this.計測 = 計測; return this; }
+		public Builder 抽出方式(抽出器 抽出方式) { this.抽出方式 = Objects.requireNonNull(抽出方式); return this; }
+		public Builder 文書属性テンプレート(IText.文書属性 文書属性テンプレート) { this.文書属性テンプレート = 文書属性テンプレート; return this; }
+		public Builder 標本ページ数(int 標本ページ数) { this.標本ページ数 = 標本ページ数; return this; }
+		public Builder 二段階解析(boolean 二段階解析) { this.二段階解析 = 二段階解析; return this; }
+		public Builder ファイル並列度(int ファイル並列度) { this.ファイル並列度 = ファイル並列度; return this; }
+		public Builder 様式名出現最大行(int 様式名出現最大行) { this.様式名出現最大行 = 様式名出現最大行; return this; }
+		public Builder 様式IDパターン(Pattern 様式IDパターン) { this.様式IDパターン = Objects.requireNonNull(様式IDパターン); return this; }
+		public Builder 様式見出し領域(float 様式見出し領域) { this.様式見出し領域 = 様式見出し領域; return this; }
+
+		public 抽出設定 build() {
+			return new 抽出設定(this);
+		}
+	}
+}
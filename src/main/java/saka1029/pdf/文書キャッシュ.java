@@ -0,0 +1,180 @@
+package saka1029.pdf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import saka1029.pdf.IText.文書属性;
+
+/**
+ * PDFファイルの任意のページのテキストを取り出します。
+ * 開いた文書と文書ごとの文書属性、組版したページをそれぞれ最大数までLRUで保持するので、
+ * 同じ文書の別のページを取り出すときは文書属性を求め直さず、そのページだけを解析します。
+ * 文書属性はITextのread(String, ページ出力)と同じく求めるので、
+ * 最初のページを取り出すときは文書属性テンプレートを指定しなければ全ページ(標本ページ数を指定した場合は標本)を解析します。
+ * ファイルの大きさか更新日時が変わった場合はその文書の文書属性とページを破棄して開き直します。
+ * メソッドはすべて同期しているので複数のスレッドから使用できます。
+ */
+public class 文書キャッシュ implements Closeable {
+
+	public final IText itext;
+	public final int 最大文書数, 最大ページ数;
+	/**
+	 * 解析したページの数です。文書属性を求めるための解析を含みます。
+	 */
+	public final LongAdder 解析数 = new LongAdder();
+
+	record ページキー(String path, int pageNo) {
+	}
+
+	final Map<String, 文書> 文書一覧 = new LinkedHashMap<>(16, 0.75F, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, 文書> eldest) {
+			if (size() <= 最大文書数)
+				return false;
+			eldest.getValue().doc.close();
+			return true;
+		}
+	};
+
+	final Map<ページキー, List<String>> ページ一覧 = new LinkedHashMap<>(16, 0.75F, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ページキー, List<String>> eldest) {
+			return size() > 最大ページ数;
+		}
+	};
+
+	public 文書キャッシュ(IText itext, int 最大文書数, int 最大ページ数) {
+		this.itext = itext;
+		this.最大文書数 = 最大文書数;
+		this.最大ページ数 = 最大ページ数;
+	}
+
+	/**
+	 * 開いているPDFファイルです。文書属性は最初に必要になったときに求めます。
+	 * 最大文書数を超えて閉じた後に使用した場合は開き直します。
+	 */
+	public class 文書 {
+		public final String path;
+		final String 指紋;
+		final 抽出器.文書 doc;
+		final IText.ページ解析器 parser;
+		文書属性 文書属性 = null;
+
+		文書(String path, String 指紋) throws IOException {
+			this.path = path;
+			this.指紋 = 指紋;
+			this.doc = itext.文書(path);
+			this.parser = itext.new ページ解析器(path, doc);
+		}
+
+		/**
+		 * 開いている文書を返します。閉じている場合は開き直します。
+		 */
+		文書 有効() throws IOException {
+			return 文書一覧.get(path) == this ? this : 文書キャッシュ.this.文書(path);
+		}
+
+		public int ページ数() throws IOException {
+			synchronized (文書キャッシュ.this) {
+				return 有効().doc.ページ数();
+			}
+		}
+
+		public 文書属性 文書属性() throws IOException {
+			synchronized (文書キャッシュ.this) {
+				return 有効().文書属性(0, null);
+			}
+		}
+
+		/**
+		 * 文書属性を求めます。
+		 * 文書属性を求めるために解析したページがpageNoであれば、pagesに保存します。
+		 */
+		文書属性 文書属性(int pageNo, 要素表[] pages) throws IOException {
+			if (文書属性 == null)
+				文書属性 = itext.文書属性(path, parser, doc.ページ数(), (page, n) -> {
+					解析数.increment();
+					if (n == pageNo)
+						pages[0] = page;
+				});
+			return 文書属性;
+		}
+
+		/**
+		 * 1ページのテキストを返します。
+		 * @param pageNo ページ番号(1から)を指定します。
+		 */
+		public List<String> page(int pageNo) throws IOException {
+			synchronized (文書キャッシュ.this) {
+				文書 d = 有効();
+				return d == this ? ページ(pageNo) : d.ページ(pageNo);
+			}
+		}
+
+		List<String> ページ(int pageNo) throws IOException {
+			if (pageNo < 1 || pageNo > doc.ページ数())
+				throw new IllegalArgumentException("ページ番号が範囲外です: %s %d".formatted(path, pageNo));
+			ページキー key = new ページキー(path, pageNo);
+			List<String> lines = ページ一覧.get(key);
+			if (lines != null)
+				return lines;
+			要素表[] pages = new 要素表[1];
+			文書属性 文書属性 = 文書属性(pageNo, pages);
+			要素表 page = pages[0];
+			if (page == null) {
+				page = parser.parse(pageNo);
+				解析数.increment();
+			}
+			lines = itext.ページ組版(path, pageNo, page, 文書属性);
+			ページ一覧.put(key, lines);
+			return lines;
+		}
+	}
+
+	/**
+	 * pathの文書を返します。開いていなければ開きます。
+	 */
+	public synchronized 文書 文書(String path) throws IOException {
+		String 指紋 = リーダープール.指紋(path);
+		文書 d = 文書一覧.get(path);
+		if (d != null && d.指紋.equals(指紋))
+			return d;
+		if (d != null) {
+			文書一覧.remove(path);
+			d.doc.close();
+			ページ一覧.keySet().removeIf(k -> k.path().equals(path));
+		}
+		d = new 文書(path, 指紋);
+		文書一覧.put(path, d);
+		return d;
+	}
+
+	public List<String> page(String path, int pageNo) throws IOException {
+		return 文書(path).page(pageNo);
+	}
+
+	/**
+	 * 指定した範囲のページのテキストを返します。
+	 * toPageがページ数を超える場合は最後のページまでを返します。
+	 */
+	public synchronized List<List<String>> read(String path, int fromPage, int toPage) throws IOException {
+		文書 d = 文書(path);
+		List<List<String>> result = new ArrayList<>();
+		for (int pageNo = fromPage, to = Math.min(toPage, d.ページ数()); pageNo <= to; ++pageNo)
+			result.add(d.page(pageNo));
+		return result;
+	}
+
+	@Override
+	public synchronized void close() {
+		for (文書 d : 文書一覧.values())
+			d.doc.close();
+		文書一覧.clear();
+		ページ一覧.clear();
+	}
+}
@@ -0,0 +1,135 @@
+package saka1029.pdf;
+
+import java.util.Arrays;
+
+/**
+ * 文書属性を求めるための統計をページ単位に集計します。
+ * ページを解析するたびにadd()で集計するので、文書全体をもう一度走査する必要がありません。
+ * ページ範囲ごとに集計した結果はmerge()で結合できます。
+ * 結合はページ順に行う必要があります。
+ */
+public class 文書統計 {
+
+	float 左余白 = Float.MAX_VALUE;
+	final 度数分布 行間隔度数分布 = new 度数分布();
+	final 度数分布 行高さ度数分布 = new 度数分布();
+
+	/**
+	 * 行分割済みのページを集計します。
+	 * 左余白は各行の最初に追加された要素のx座標の最小値、
+	 * 行間隔は隣接する行のy座標の差の度数、
+	 * 行高さは要素の高さの文字数で重み付けした度数です。
+	 */
+	public void add(要素表 page) {
+		float prevY = Float.MIN_VALUE;
+		for (int k = 0, lineSize = page.行数(); k < lineSize; ++k) {
+			int start = page.行開始[k], end = page.行開始[k + 1];
+			左余白 = Math.min(左余白, page.x[page.行順[start]]);
+			float y = page.行y(k);
+			if (prevY != Float.MIN_VALUE)
+				行間隔度数分布.add(y - prevY, 1);
+			prevY = y;
+			for (int i = start; i < end; ++i) {
+				int e = page.行順[i];
+				行高さ度数分布.add(page.h[e], page.文字数(e));
+			}
+		}
+	}
+
+	/**
+	 * このページ範囲の直後に続くページ範囲の統計を結合します。
+	 */
+	public void merge(文書統計 other) {
+		左余白 = Math.min(左余白, other.左余白);
+		行間隔度数分布.merge(other.行間隔度数分布);
+		行高さ度数分布.merge(other.行高さ度数分布);
+	}
+
+	/**
+	 * 左余白を返します。要素がない場合は0を返します。
+	 */
+	public float 左余白() {
+		return 左余白 == Float.MAX_VALUE ? 0 : 左余白;
+	}
+
+	/**
+	 * 最も多い行間隔を返します。行が2行未満の場合は既定値を返します。
+	 */
+	public float 行間隔(float 既定値) {
+		return 行間隔度数分布.最頻値(既定値);
+	}
+
+	/**
+	 * 文字数が最も多い行高さを返します。要素がない場合は既定値を返します。
+	 */
+	public float 行高さ(float 既定値) {
+		return 行高さ度数分布.最頻値(既定値);
+	}
+
+	/**
+	 * floatの値ごとの度数をプリミティブ配列で数えます。
+	 * 値は最初に現れた順に保持します。
+	 */
+	static class 度数分布 {
+		float[] 値 = new float[16];
+		int[] 度数 = new int[16];
+		int size = 0;
+		/**
+		 * 値のビット表現によるオープンアドレス法のハッシュ表です。
+		 * 要素は値の位置+1で、0は空きを表します。
+		 */
+		int[] 表 = new int[32];
+
+		int find(float value) {
+			int bits = Float.floatToIntBits(value), mask = 表.length - 1;
+			for (int i = (bits ^ (bits >>> 16)) & mask; ; i = (i + 1) & mask) {
+				int slot = 表[i];
+				if (slot == 0 || Float.floatToIntBits(値[slot - 1]) == bits)
+					return i;
+			}
+		}
+
+		void add(float value, int count) {
+			int i = find(value);
+			int slot = 表[i];
+			if (slot != 0) {
+				度数[slot - 1] += count;
+				return;
+			}
+			if (size == 値.length) {
+				値 = Arrays.copyOf(値, size * 2);
+				度数 = Arrays.copyOf(度数, size * 2);
+			}
+			値[size] = value;
+			度数[size] = count;
+			表[i] = ++size;
+			if (size * 2 > 表.length)
+				rehash();
+		}
+
+		void rehash() {
+			表 = new int[表.length * 2];
+			for (int j = 0; j < size; ++j)
+				表[find(値[j])] = j + 1;
+		}
+
+		void merge(度数分布 other) {
+			for (int j = 0; j < other.size; ++j)
+				add(other.値[j], other.度数[j]);
+		}
+
+		/**
+		 * 度数が最大の値を返します。
+		 * 同数の値がある場合は最初に現れた値を返します。
+		 */
+		float 最頻値(float 既定値) {
+			if (size == 0)
+				return 既定値;
+			int max = 0;
+			for (int j = 1; j < size; ++j)
+				if (度数[j] > 度数[max])
+					max = j;
+			return 値[max];
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package saka1029.pdf;
+
+import java.text.Normalizer;
+import java.text.Normalizer.Form;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 出力する行がページ番号や様式IDであるかを判定します。
+ * パターンが既定値の場合は、正規表現を適用する前に文字の種類で候補を絞り込みます。
+ * 絞り込みは一致する可能性のある行を除外しないので、結果は正規表現だけで判定した場合と同じです。
+ * パターンを変更した場合は絞り込まずに正規表現だけで判定します。
+ * NFKD正規化した行はLRUキャッシュに保持します。
+ * スレッドセーフではないので、文書ごとまたはスレッドごとに作成します。
+ */
+class 行分類 {
+
+	static final int 正規化キャッシュ最大数 = 1024;
+
+	final Pattern ページ番号パターン, 様式IDパターン;
+	final boolean ページ番号絞込, 様式ID絞込;
+	final Map<String, String> 正規化キャッシュ = new LinkedHashMap<>(16, 0.75F, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > 正規化キャッシュ最大数;
+		}
+	};
+
+	行分類(Pattern ページ番号パターン, Pattern 様式IDパターン) {
+		this.ページ番号パターン = ページ番号パターン;
+		this.様式IDパターン = 様式IDパターン;
+		this.ページ番号絞込 = ページ番号パターン == IText.既定ページ番号パターン;
+		this.様式ID絞込 = 様式IDパターン == IText.既定様式IDパターン;
+	}
+
+	/**
+	 * ページ番号の行であれば先頭に#を付けて返します。
+	 * そうでなければlineをそのまま返します。
+	 */
+	String ページ番号(String line) {
+		if (ページ番号絞込 && !ページ番号候補(line))
+			return line;
+		return ページ番号パターン.matcher(line).replaceFirst("#$0");
+	}
+
+	/**
+	 * 既定ページ番号パターンに一致する行は、末尾の空白と行区切り文字を除いた最後の文字が-で、
+	 * それより前に数字を含みます。
+	 */
+	static boolean ページ番号候補(String line) {
+		int last = line.length() - 1;
+		while (last >= 0 && 末尾空白(line.charAt(last)))
+			--last;
+		if (last < 0 || line.charAt(last) != '-')
+			return false;
+		for (int i = 0; i < last; ++i) {
+			char c = line.charAt(i);
+			if (c >= '0' && c <= '9')
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 正規表現の\sと、$の直前に置ける行区切り文字です。
+	 */
+	static boolean 末尾空白(char c) {
+		return switch (c) {
+			case ' ', '\t', '\n', '\u000B', '\f', '\r', '\u0085', '\u2028', '\u2029' -> true;
+			default -> false;
+		};
+	}
+
+	/**
+	 * 行をNFKD正規化して様式IDパターンと照合します。
+	 * @return 一致した場合はMatcherを、そうでなければnullを返します。
+	 */
+	Matcher 様式ID(String line) {
+		if (様式ID絞込 && !様式ID候補(line))
+			return null;
+		Matcher m = 様式IDパターン.matcher(正規化(line));
+		return m.matches() ? m : null;
+	}
+
+	String 正規化(String line) {
+		return 正規化キャッシュ.computeIfAbsent(line, l -> Normalizer.normalize(l, Form.NFKD));
+	}
+
+	static final byte 未分類 = 0, 不一致 = 1, 読飛 = 2, 候補 = 3;
+
+	/**
+	 * BMPの各文字をNFKD正規化した結果で分類した表です。
+	 * 文字ごとに最初に現れたときに分類します。
+	 * 複数のスレッドが同じ文字を同時に分類しても結果は同じなので同期しません。
+	 */
+	static final byte[] 先頭文字種 = new byte[Character.MAX_VALUE + 1];
+
+	/**
+	 * 既定様式IDパターンはNFKD正規化した行の先頭の空白と(の直後が「様」または「別」です。
+	 * 行頭から文字ごとの正規化結果で読み飛ばせる文字を飛ばし、最初の文字で判定します。
+	 * 結合文字はその前の文字を越えて並び替えられないので、文字ごとに判定できます。
+	 */
+	static boolean 様式ID候補(String line) {
+		for (int i = 0, size = line.length(); i < size; ++i)
+			switch (先頭文字種(line.charAt(i))) {
+				case 読飛: continue;
+				case 候補: return true;
+				default: return false;
+			}
+		return false;
+	}
+
+	/**
+	 * 文字を分類します。サロゲートは常に候補とします。
+	 */
+	static byte 先頭文字種(char c) {
+		byte 種類 = 先頭文字種[c];
+		if (種類 != 未分類)
+			return 種類;
+		if (Character.isSurrogate(c))
+			種類 = 候補;
+		else {
+			String d = Normalizer.normalize(String.valueOf(c), Form.NFKD);
+			int i = 0;
+			while (i < d.length() && (末尾空白(d.charAt(i)) || d.charAt(i) == '('))
+				++i;
+			種類 = i >= d.length() ? 読飛 : d.charAt(i) == '様' || d.charAt(i) == '別' ? 候補 : 不一致;
+		}
+		return 先頭文字種[c] = 種類;
+	}
+}
@@ -0,0 +1,173 @@
+package saka1029.pdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 2つのテキストの行の差分をMyersのO(ND)アルゴリズムで求めます。
+ * 行は整数に置き換えて比較し、先頭と末尾の一致する行は除いてから差分を求めるので、
+ * ほとんど同じテキストは行数に比例する時間で比較できます。
+ * 編集数が最大編集数を超える場合は探索を打ち切り、
+ * 一致しない範囲をすべて削除して挿入する(最小ではない)差分を返します。
+ */
+public class 行差分 {
+
+	/**
+	 * 削除('-')または挿入('+')した1行です。
+	 * 旧行、新行は0から始まる行番号で、削除の場合は旧テキストの行、挿入の場合は新テキストの行です。
+	 */
+	public record 編集(char 種類, int 旧行, int 新行, String 行) {
+		@Override
+		public String toString() {
+			return 種類 + 行;
+		}
+	}
+
+	public final List<編集> 編集一覧;
+	public final boolean 打切り;
+
+	行差分(List<編集> 編集一覧, boolean 打切り) {
+		this.編集一覧 = 編集一覧;
+		this.打切り = 打切り;
+	}
+
+	public boolean 一致() {
+		return 編集一覧.isEmpty();
+	}
+
+	public int 削除数() {
+		return (int) 編集一覧.stream().filter(e -> e.種類 == '-').count();
+	}
+
+	public int 挿入数() {
+		return (int) 編集一覧.stream().filter(e -> e.種類 == '+').count();
+	}
+
+	/**
+	 * 連続する編集を「@@ -旧行,行数 +新行,行数 @@」で始まるまとまりにしてunified形式で返します。
+	 * 前後の一致する行は含みません。行番号は1からです。
+	 * @param 最大行数 返す行数の上限です。
+	 */
+	public List<String> unified(int 最大行数) {
+		List<String> result = new ArrayList<>();
+		for (int i = 0, size = 編集一覧.size(); i < size && result.size() < 最大行数;) {
+			int j = i;
+			int 旧開始 = 編集一覧.get(i).旧行, 新開始 = 編集一覧.get(i).新行, 旧数 = 0, 新数 = 0;
+			// 削除の後の挿入は同じまとまりにする
+			for (; j < size; ++j) {
+				編集 e = 編集一覧.get(j);
+				if (e.種類 == '-' && 新数 == 0 && e.旧行 == 旧開始 + 旧数)
+					++旧数;
+				else if (e.種類 == '+' && e.新行 == 新開始 + 新数 && (旧数 == 0 || e.旧行 == 旧開始 + 旧数))
+					++新数;
+				else
+					break;
+			}
+			result.add("@@ -%d,%d +%d,%d @@".formatted(旧開始 + 1, 旧数, 新開始 + 1, 新数));
+			for (; i < j && result.size() < 最大行数; ++i)
+				result.add(編集一覧.get(i).toString());
+			i = j;
+		}
+		return result;
+	}
+
+	/**
+	 * 旧テキストを新テキストにする編集を求めます。
+	 * 編集は旧テキストの行番号の順です。
+	 */
+	public static 行差分 比較(List<String> 旧, List<String> 新, int 最大編集数) {
+		Map<String, Integer> 番号 = new HashMap<>();
+		int[] a = 番号(旧, 番号), b = 番号(新, 番号);
+		int start = 0, aEnd = a.length, bEnd = b.length;
+		while (start < aEnd && start < bEnd && a[start] == b[start])
+			++start;
+		while (aEnd > start && bEnd > start && a[aEnd - 1] == b[bEnd - 1]) {
+			--aEnd;
+			--bEnd;
+		}
+		List<編集> result = new ArrayList<>();
+		boolean 打切り = !myers(a, b, start, aEnd, bEnd, 最大編集数, result);
+		if (打切り) {
+			result.clear();
+			for (int x = start; x < aEnd; ++x)
+				result.add(new 編集('-', x, start, 旧.get(x)));
+			for (int y = start; y < bEnd; ++y)
+				result.add(new 編集('+', aEnd, y, 新.get(y)));
+		} else {
+			for (int i = 0, size = result.size(); i < size; ++i) {
+				編集 e = result.get(i);
+				result.set(i, new 編集(e.種類, e.旧行, e.新行, e.種類 == '-' ? 旧.get(e.旧行) : 新.get(e.新行)));
+			}
+		}
+		return new 行差分(result, 打切り);
+	}
+
+	static int[] 番号(List<String> lines, Map<String, Integer> 番号) {
+		int[] result = new int[lines.size()];
+		int i = 0;
+		for (String line : lines)
+			result[i++] = 番号.computeIfAbsent(line, k -> 番号.size());
+		return result;
+	}
+
+	/**
+	 * a[start, aEnd)をb[start, bEnd)にする最小の編集をresultに追加します。
+	 * 編集の行はnullとし、呼び出し側で設定します。
+	 * @return 編集数が最大編集数を超えた場合はfalseを返します。
+	 */
+	static boolean myers(int[] a, int[] b, int start, int aEnd, int bEnd, int 最大編集数, List<編集> result) {
+		int n = aEnd - start, m = bEnd - start, max = Math.min(n + m, 最大編集数);
+		if (n + m == 0)
+			return true;
+		int offset = max + 1;
+		int[] v = new int[2 * max + 3];
+		// trace.get(d)はd回目の探索を始める前の-d..dの範囲のvです。
+		List<int[]> trace = new ArrayList<>();
+		for (int d = 0; d <= max; ++d) {
+			int[] snapshot = new int[2 * d + 1];
+			System.arraycopy(v, offset - d, snapshot, 0, 2 * d + 1);
+			trace.add(snapshot);
+			for (int k = -d; k <= d; k += 2) {
+				int x = k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])
+					? v[offset + k + 1] : v[offset + k - 1] + 1;
+				int y = x - k;
+				while (x < n && y < m && a[start + x] == b[start + y]) {
+					++x;
+					++y;
+				}
+				v[offset + k] = x;
+				if (x >= n && y >= m) {
+					逆探索(trace, start, n, m, d, result);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	static void 逆探索(List<int[]> trace, int start, int n, int m, int last, List<編集> result) {
+		List<編集> reverse = new ArrayList<>();
+		int x = n, y = m;
+		for (int d = last; d > 0; --d) {
+			int[] v = trace.get(d);
+			int k = x - y;
+			int prevK = k == -d || (k != d && v[k - 1 + d] < v[k + 1 + d]) ? k + 1 : k - 1;
+			int prevX = v[prevK + d], prevY = prevX - prevK;
+			while (x > prevX && y > prevY) {
+				--x;
+				--y;
+			}
+			if (prevK == k + 1)
+				reverse.add(new 編集('+', start + x, start + prevY, null));
+			else
+				reverse.add(new 編集('-', start + prevX, start + y, null));
+			x = prevX;
+			y = prevY;
+		}
+		Collections.reverse(reverse);
+		result.addAll(reverse);
+	}
+}
@@ -0,0 +1,286 @@
+package saka1029.pdf;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import saka1029.pdf.IText.Element;
+
+/**
+ * 1ページ分の要素を列ごとのプリミティブ配列で保持します。
+ * 要素ごとにElementやFloatのオブジェクトを作らないので、
+ * 1文字ごとに要素ができる日本語の文書でもGCの負荷が小さくなります。
+ * テキストは共有の文字配列に連結し、要素ごとの開始位置で参照します。
+ * 行分割()を呼び出すとy座標でソートした要素の順序と行の境界を求めます。
+ */
+public class 要素表 {
+
+	static final int 初期容量 = 256;
+
+	float[] x = new float[初期容量], y = new float[初期容量], w = new float[初期容量], h = new float[初期容量];
+	/**
+	 * 要素iのテキストは文字[文字位置[i]]から文字[文字位置[i + 1]]の直前までです。
+	 */
+	int[] 文字位置 = new int[初期容量 + 1];
+	char[] 文字 = new char[初期容量 * 2];
+	int size = 0;
+
+	/**
+	 * y座標の昇順にソートした要素の番号です。
+	 * y座標が同じ要素は追加した順に並びます。
+	 */
+	int[] 行順 = new int[0];
+	/**
+	 * 行kの要素は行順[行開始[k]]から行順[行開始[k + 1]]の直前までです。
+	 */
+	int[] 行開始 = new int[1];
+	int 行数 = 0;
+
+	/**
+	 * ソートのための作業領域です。
+	 */
+	int[] 作業 = new int[0];
+
+	public int size() {
+		return size;
+	}
+
+	public float x(int i) {
+		return x[i];
+	}
+
+	public float y(int i) {
+		return y[i];
+	}
+
+	public float w(int i) {
+		return w[i];
+	}
+
+	public float h(int i) {
+		return h[i];
+	}
+
+	public int 文字数(int i) {
+		return 文字位置[i + 1] - 文字位置[i];
+	}
+
+	public String text(int i) {
+		return new String(文字, 文字位置[i], 文字数(i));
+	}
+
+	/**
+	 * 要素iの値をElementとして返します。
+	 */
+	public Element element(int i) {
+		return new Element(x[i], y[i], w[i], h[i], text(i));
+	}
+
+	public void add(float x, float y, float w, float h, String text) {
+		if (size == this.x.length) {
+			int capacity = size * 2;
+			this.x = Arrays.copyOf(this.x, capacity);
+			this.y = Arrays.copyOf(this.y, capacity);
+			this.w = Arrays.copyOf(this.w, capacity);
+			this.h = Arrays.copyOf(this.h, capacity);
+			文字位置 = Arrays.copyOf(文字位置, capacity + 1);
+		}
+		int start = 文字位置[size], end = start + text.length();
+		if (end > 文字.length)
+			文字 = Arrays.copyOf(文字, Math.max(end, 文字.length * 2));
+		text.getChars(0, text.length(), 文字, start);
+		this.x[size] = x;
+		this.y[size] = y;
+		this.w[size] = w;
+		this.h[size] = h;
+		文字位置[++size] = end;
+	}
+
+	/**
+	 * 最後に追加した要素とy座標、高さが同じで、xがその右端に一致する場合はテキストを連結します。
+	 * 連結した要素の幅はテキストの右端までになります。
+	 * @return 連結した場合はtrueを返します。
+	 */
+	public boolean 連結(float x, float y, float w, float h, String text) {
+		int last = size - 1;
+		if (last < 0 || this.y[last] != y || this.h[last] != h || this.x[last] + this.w[last] != x)
+			return false;
+		int start = 文字位置[size], end = start + text.length();
+		if (end > 文字.length)
+			文字 = Arrays.copyOf(文字, Math.max(end, 文字.length * 2));
+		text.getChars(0, text.length(), 文字, start);
+		文字位置[size] = end;
+		this.w[last] = x + w - this.x[last];
+		return true;
+	}
+
+	/**
+	 * 要素を書き出します。行分割の結果は書き出しません。
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(size);
+		for (int i = 0; i < size; ++i) {
+			if (文字数(i) > 0xFFFF)
+				throw new IOException("text too long: " + 文字数(i));
+			out.writeFloat(x[i]);
+			out.writeFloat(y[i]);
+			out.writeFloat(w[i]);
+			out.writeFloat(h[i]);
+			out.writeShort(文字数(i));
+		}
+		for (int i = 0, end = 文字位置[size]; i < end; ++i)
+			out.writeChar(文字[i]);
+	}
+
+	/**
+	 * write()で書き出した要素を読み込みます。
+	 */
+	public static 要素表 read(DataInput in) throws IOException {
+		要素表 page = new 要素表();
+		int size = in.readInt();
+		if (size < 0)
+			throw new IOException("invalid size: " + size);
+		int capacity = Math.max(size, 初期容量);
+		page.x = new float[capacity];
+		page.y = new float[capacity];
+		page.w = new float[capacity];
+		page.h = new float[capacity];
+		page.文字位置 = new int[capacity + 1];
+		for (int i = 0; i < size; ++i) {
+			page.x[i] = in.readFloat();
+			page.y[i] = in.readFloat();
+			page.w[i] = in.readFloat();
+			page.h[i] = in.readFloat();
+			page.文字位置[i + 1] = page.文字位置[i] + in.readUnsignedShort();
+		}
+		page.size = size;
+		int length = page.文字位置[size];
+		page.文字 = new char[Math.max(length, 初期容量 * 2)];
+		for (int i = 0; i < length; ++i)
+			page.文字[i] = in.readChar();
+		return page;
+	}
+
+	public void clear() {
+		size = 0;
+		行数 = 0;
+	}
+
+	/**
+	 * 要素をy座標で行にまとめます。
+	 */
+	public void 行分割() {
+		if (行順.length < size) {
+			行順 = new int[size];
+			行開始 = new int[size + 1];
+		}
+		for (int i = 0; i < size; ++i)
+			行順[i] = i;
+		sort(行順, size, y順);
+		行数 = 0;
+		for (int i = 0; i < size; ++i)
+			if (i == 0 || Float.compare(y[行順[i - 1]], y[行順[i]]) != 0)
+				行開始[行数++] = i;
+		行開始[行数] = size;
+	}
+
+	public int 行数() {
+		return 行数;
+	}
+
+	public float 行y(int k) {
+		return y[行順[行開始[k]]];
+	}
+
+	/**
+	 * 行kの要素の番号をdestのoffset以降にコピーします。
+	 * @return コピーした要素の数を返します。
+	 */
+	public int 行要素(int k, int[] dest, int offset) {
+		int start = 行開始[k], length = 行開始[k + 1] - start;
+		System.arraycopy(行順, start, dest, offset, length);
+		return length;
+	}
+
+	/**
+	 * 行内の要素の番号をx座標の昇順、y座標の降順にソートします。
+	 * x座標とy座標がともに等しい要素は最初のものだけを残します。
+	 * これはTreeSet&lt;Element&gt;にIText.行内ソートで追加した結果と同じです。
+	 * @return 残った要素の数を返します。
+	 */
+	public int 行内ソート(int[] line, int n) {
+		sort(line, n, 行内順);
+		int m = 0;
+		for (int i = 0; i < n; ++i)
+			if (m == 0 || 行内順.compare(line[m - 1], line[i]) != 0)
+				line[m++] = line[i];
+		return m;
+	}
+
+	/**
+	 * 既存のDebugElementに渡すために行内の要素をElementの集合に変換します。
+	 */
+	public TreeSet<Element> 要素集合(int[] line, int n) {
+		TreeSet<Element> set = new TreeSet<>(IText.行内ソート);
+		for (int i = 0; i < n; ++i)
+			set.add(element(line[i]));
+		return set;
+	}
+
+	interface 比較 {
+		int compare(int a, int b);
+	}
+
+	final 比較 y順 = (a, b) -> Float.compare(y[a], y[b]);
+	final 比較 行内順 = (a, b) -> {
+		int c = Float.compare(x[a], x[b]);
+		return c != 0 ? c : Float.compare(y[b], y[a]);
+	};
+
+	/**
+	 * 要素の番号の配列を安定ソートします。
+	 * 要素はほぼ整列した順に現れるので、挿入ソートした小区間を併合します。
+	 */
+	void sort(int[] a, int n, 比較 c) {
+		final int RUN = 16;
+		for (int lo = 0; lo < n; lo += RUN) {
+			int hi = Math.min(lo + RUN, n);
+			for (int i = lo + 1; i < hi; ++i) {
+				int v = a[i], j = i - 1;
+				while (j >= lo && c.compare(a[j], v) > 0) {
+					a[j + 1] = a[j];
+					--j;
+				}
+				a[j + 1] = v;
+			}
+		}
+		if (n <= RUN)
+			return;
+		if (作業.length < n)
+			作業 = new int[Math.max(n, size)];
+		int[] src = a, dst = 作業;
+		for (int width = RUN; width < n; width *= 2) {
+			for (int lo = 0; lo < n; lo += 2 * width) {
+				int mid = Math.min(lo + width, n), hi = Math.min(lo + 2 * width, n);
+				if (mid >= hi || c.compare(src[mid - 1], src[mid]) <= 0) {
+					System.arraycopy(src, lo, dst, lo, hi - lo);
+					continue;
+				}
+				int i = lo, j = mid, k = lo;
+				while (i < mid && j < hi)
+					dst[k++] = c.compare(src[j], src[i]) < 0 ? src[j++] : src[i++];
+				while (i < mid)
+					dst[k++] = src[i++];
+				while (j < hi)
+					dst[k++] = src[j++];
+			}
+			int[] t = src;
+			src = dst;
+			dst = t;
+		}
+		if (src != a)
+			System.arraycopy(src, 0, a, 0, n);
+	}
+}
@@ -0,0 +1,151 @@
+package saka1029.pdf;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import saka1029.pdf.IText.文書属性;
+
+/**
+ * ITextの処理段階ごとの時間と件数を受け取ります。
+ * 抽出設定.計測に指定しない場合は時刻の取得も行わないので、処理の負荷は増えません。
+ * 並列度やファイル並列度が2以上の場合は複数のスレッドから呼び出されるので、
+ * 実装はスレッドセーフである必要があります。
+ * 時間はすべてナノ秒です。
+ */
+public interface 計測 {
+
+	/**
+	 * PDFファイルを開きました。
+	 */
+	default void 開く(String path, long nanos) {
+	}
+
+	/**
+	 * ページのコンテンツを解析して要素表を作成しました。
+	 * ページキャッシュから読み込んだ場合も含みます。
+	 */
+	default void 解析(String path, int pageNo, int 要素数, long nanos) {
+	}
+
+	/**
+	 * 要素表を行に分割しました。
+	 */
+	default void 行分割(String path, int pageNo, int 行数, long nanos) {
+	}
+
+	/**
+	 * ページを文書統計に集計しました。
+	 */
+	default void 統計(String path, int pageNo, long nanos) {
+	}
+
+	/**
+	 * 文書統計から文書属性を求めました。
+	 */
+	default void 文書属性(String path, 文書属性 文書属性, long nanos) {
+	}
+
+	/**
+	 * 1ページ分の行を文字列に変換しました。
+	 */
+	default void 組版(String path, int pageNo, int 行数, long nanos) {
+	}
+
+	/**
+	 * 出力ファイルを閉じました。
+	 * nanosはファイルへの書き込みにかかった時間の合計です。
+	 */
+	default void 書込(String outFile, long バイト数, long nanos) {
+	}
+
+	/**
+	 * 1つのPDFファイルの読み込みを終了しました。
+	 * nanosはファイルを開いてから最後のページを組版するまでの時間です。
+	 */
+	default void 文書(String path, int ページ数, long nanos) {
+	}
+
+	/**
+	 * 計測結果を段階ごとに合計します。
+	 * toString()は1秒あたりのページ数やページあたりの要素数、行数を含む要約を返します。
+	 */
+	public static class 集計 implements 計測 {
+
+		public final LongAdder 開く時間 = new LongAdder(), 解析時間 = new LongAdder(),
+			行分割時間 = new LongAdder(), 統計時間 = new LongAdder(), 組版時間 = new LongAdder(),
+			書込時間 = new LongAdder(), 文書時間 = new LongAdder();
+		public final LongAdder 文書数 = new LongAdder(), ページ数 = new LongAdder(), 解析ページ数 = new LongAdder(),
+			要素数 = new LongAdder(), 行数 = new LongAdder(), 組版ページ数 = new LongAdder(), バイト数 = new LongAdder();
+
+		@Override
+		public void 開く(String path, long nanos) {
+			開く時間.add(nanos);
+		}
+
+		@Override
+		public void 解析(String path, int pageNo, int 要素数, long nanos) {
+			解析時間.add(nanos);
+			解析ページ数.increment();
+			this.要素数.add(要素数);
+		}
+
+		@Override
+		public void 行分割(String path, int pageNo, int 行数, long nanos) {
+			行分割時間.add(nanos);
+		}
+
+		@Override
+		public void 統計(String path, int pageNo, long nanos) {
+			統計時間.add(nanos);
+		}
+
+		@Override
+		public void 文書属性(String path, 文書属性 文書属性, long nanos) {
+			統計時間.add(nanos);
+		}
+
+		@Override
+		public void 組版(String path, int pageNo, int 行数, long nanos) {
+			組版時間.add(nanos);
+			組版ページ数.increment();
+			this.行数.add(行数);
+		}
+
+		@Override
+		public void 書込(String outFile, long バイト数, long nanos) {
+			書込時間.add(nanos);
+			this.バイト数.add(バイト数);
+		}
+
+		@Override
+		public void 文書(String path, int ページ数, long nanos) {
+			文書時間.add(nanos);
+			文書数.increment();
+			this.ページ数.add(ページ数);
+		}
+
+		static double 割合(long a, long b) {
+			return b == 0 ? 0 : (double) a / b;
+		}
+
+		public double ページ毎秒() {
+			return 割合(ページ数.sum() * 1_000_000_000L, 文書時間.sum());
+		}
+
+		public double 要素数毎ページ() {
+			return 割合(要素数.sum(), 解析ページ数.sum());
+		}
+
+		public double 行数毎ページ() {
+			return 割合(行数.sum(), 組版ページ数.sum());
+		}
+
+		@Override
+		public String toString() {
+			return ("文書数=%d ページ数=%d ページ/秒=%.1f 要素数/ページ=%.1f 行数/ページ=%.1f バイト数=%d"
+				+ " 開く=%dms 解析=%dms 行分割=%dms 統計=%dms 組版=%dms 書込=%dms").formatted(
+				文書数.sum(), ページ数.sum(), ページ毎秒(), 要素数毎ページ(), 行数毎ページ(), バイト数.sum(),
+				開く時間.sum() / 1_000_000, 解析時間.sum() / 1_000_000, 行分割時間.sum() / 1_000_000,
+				統計時間.sum() / 1_000_000, 組版時間.sum() / 1_000_000, 書込時間.sum() / 1_000_000);
+		}
+	}
+}
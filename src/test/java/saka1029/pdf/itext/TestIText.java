@@ -1,17 +1,32 @@
 package saka1029.pdf.itext;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.itextpdf.text.Document;
 import com.itextpdf.text.DocumentException;
@@ -20,6 +35,11 @@ import com.itextpdf.text.pdf.PdfImportedPage;
 import com.itextpdf.text.pdf.PdfReader;
 
 import saka1029.pdf.IText;
+import saka1029.pdf.ページキャッシュ;
+import saka1029.pdf.出力バッファ;
+import saka1029.pdf.抽出器;
+import saka1029.pdf.抽出設定;
+import saka1029.pdf.計測;
 
 public class TestIText {
 
@@ -49,8 +69,7 @@ public class TestIText {
 	};
 	
 	static void read(boolean horizontal, String out, String... ins) throws IOException {
-	    IText itext = new IText(horizontal);
-	    itext.debugElement = DEBUG_ELEMENT;
+	    IText itext = new IText(抽出設定.builder(horizontal).debugElement(DEBUG_ELEMENT).build());
 	    itext.テキスト変換(out, ins);
 	}
 
@@ -60,6 +79,178 @@ public class TestIText {
 		read(false, "data/kokuji-itext.txt", "kokuji.pdf");
 	}
 	
+	@Test
+	public void testParallelRead() throws IOException {
+		IText sequential = new IText(false);
+		IText parallel = new IText(抽出設定.builder(false).並列度(4).build());
+		assertEquals(sequential.read("kokuji.pdf"), parallel.read("kokuji.pdf"));
+	}
+
+	@Test
+	public void testStreamingRead() throws IOException {
+		IText itext = new IText(false);
+		List<List<String>> expected = itext.read("kokuji.pdf");
+		IText twoPass = new IText(itext.設定.toBuilder().二段階解析(true).build());
+		List<List<String>> actual = new ArrayList<>();
+		twoPass.read("kokuji.pdf", (pageNo, lines) -> {
+			assertEquals(actual.size() + 1, pageNo);
+			actual.add(lines);
+		});
+		assertEquals(expected, actual);
+	}
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	/**
+	 * 部分読込の場合も全体を読み込んだ場合と同じテキストを出力することを確認します。
+	 */
+	@Test
+	public void testPartialRead() throws IOException {
+		String[] inFiles = {"0000196315-1-2.pdf", "0000196315-379-380.pdf"};
+		String expected = temp.newFile().getPath();
+		new IText(true).テキスト変換(expected, inFiles);
+		for (int 並列度 : new int[] {1, 2}) {
+			IText partial = new IText(抽出設定.builder(true).部分読込(true).並列度(並列度).build());
+			String actual = temp.newFile().getPath();
+			partial.テキスト変換(actual, inFiles);
+			assertEquals(Files.readString(Path.of(expected)), Files.readString(Path.of(actual)));
+		}
+	}
+
+	@Test
+	public void testCache() throws IOException {
+		List<List<String>> expected = new IText(true).read("0000196315-379-380.pdf");
+		IText itext = new IText(抽出設定.builder(true).キャッシュ(new ページキャッシュ(temp.getRoot().toPath(), 1L << 20)).build());
+		assertEquals(expected, itext.read("0000196315-379-380.pdf"));
+		assertEquals(expected, itext.read("0000196315-379-380.pdf"));
+	}
+
+	@Test
+	public void testMetrics() throws IOException {
+		String expectedFile = temp.newFile().getPath(), actualFile = temp.newFile().getPath();
+		new IText(true).テキスト変換(expectedFile, "0000196315-1-2.pdf", "0000196315-379-380.pdf");
+		計測.集計 集計 = new 計測.集計();
+		IText itext = new IText(抽出設定.builder(true).計測(集計).build());
+		itext.テキスト変換(actualFile, "0000196315-1-2.pdf", "0000196315-379-380.pdf");
+		assertEquals(Files.readString(Path.of(expectedFile)), Files.readString(Path.of(actualFile)));
+		assertEquals(2, 集計.文書数.sum());
+		assertEquals(4, 集計.ページ数.sum());
+		assertEquals(4, 集計.解析ページ数.sum());
+		assertEquals(4, 集計.組版ページ数.sum());
+		assertEquals(Files.size(Path.of(actualFile)), 集計.バイト数.sum());
+	}
+
+	@Test
+	public void testGlyphCoalescing() throws IOException {
+		for (String path : List.of("kokuji.pdf", "0000196315-1-2.pdf", "0000196315-379-380.pdf")) {
+			List<List<String>> expected = new IText(true).read(path);
+			IText itext = new IText(抽出設定.builder(true).グリフ結合(true).build());
+			assertEquals(expected, itext.read(path));
+		}
+	}
+
+	/**
+	 * 文字列の高さをキャッシュした場合も毎回計算した場合と同じテキストになることを確認します。
+	 */
+	@Test
+	public void testHeightCache() throws IOException {
+		Map<String, Boolean> inFiles = Map.of("kokuji.pdf", false, "0000196315-1-2.pdf", true, "0000196315-379-380.pdf", true);
+		for (Map.Entry<String, Boolean> e : inFiles.entrySet()) {
+			IText cached = new IText(e.getValue());
+			IText computed = new IText(抽出設定.builder(e.getValue()).抽出方式(抽出器.ITEXT_高さ計算).build());
+			String expected = temp.newFile().getPath(), actual = temp.newFile().getPath();
+			computed.テキスト変換(expected, e.getKey());
+			cached.テキスト変換(actual, e.getKey());
+			assertEquals(Files.readString(Path.of(expected)), Files.readString(Path.of(actual)));
+		}
+	}
+
+	/**
+	 * PDFBoxで抽出した場合もiTextと同じテキストになることを確認します。
+	 */
+	@Test
+	public void testPdfBoxBackend() throws IOException {
+		for (String path : List.of("0000196315-1-2.pdf", "0000196315-379-380.pdf")) {
+			List<List<String>> expected = new IText(true).read(path);
+			抽出設定 pdfbox = 抽出設定.builder(true).抽出方式(抽出器.PDFBOX).build();
+			assertEquals(expected, new IText(pdfbox).read(path));
+			assertEquals(expected, new IText(pdfbox.toBuilder().並列度(2).build()).read(path));
+		}
+	}
+
+	/**
+	 * 出力バッファがOutputStreamWriterと同じバイト列を書き出し、
+	 * ファイル名が.gzの場合はGZIPOutputStreamと同じ内容に圧縮することを確認します。
+	 */
+	@Test
+	public void testOutputBuffer() throws IOException {
+		// 文字バッファの境界をまたぐサロゲートペア、単独のサロゲート、Shift_JISで符号化できない文字
+		String text = "あ".repeat(8191) + "𠮷a\uD800bé\uD842";
+		for (Charset charset : List.of(StandardCharsets.UTF_8, Charset.forName("Shift_JIS"))) {
+			Path expected = temp.newFile().toPath(), actual = temp.newFile().toPath();
+			try (Writer writer = new OutputStreamWriter(new FileOutputStream(expected.toFile()), charset)) {
+				writer.write(text);
+			}
+			try (出力バッファ out = new 出力バッファ(actual.toString(), charset, null)) {
+				out.append(text, 0, 8192).append(new StringBuilder(text.substring(8192)));
+			}
+			assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(actual));
+		}
+		String[] inFiles = {"0000196315-1-2.pdf", "0000196315-379-380.pdf"};
+		Path plain = temp.getRoot().toPath().resolve("plain.txt"), gzip = temp.getRoot().toPath().resolve("text.txt.gz");
+		new IText(true).テキスト変換(plain.toString(), inFiles);
+		new IText(抽出設定.builder(true).ファイル並列度(2).build()).テキスト変換(gzip.toString(), inFiles);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		try (OutputStream out = new GZIPOutputStream(expected)) {
+			out.write(Files.readAllBytes(plain));
+		}
+		assertArrayEquals(expected.toByteArray(), Files.readAllBytes(gzip));
+	}
+
+	/**
+	 * 既定のパターンによる絞り込みと、同じ内容の別のパターン(正規表現だけで判定)の結果が同じことを確認します。
+	 */
+	@Test
+	public void testLineClassifier() throws IOException {
+		String[] inFiles = {"0000196315-1-2.pdf", "0000196315-379-380.pdf"};
+		IText fast = new IText(true), slow = new IText(抽出設定.builder(true)
+			.ページ番号パターン(Pattern.compile(IText.既定ページ番号パターン.pattern()))
+			.様式IDパターン(Pattern.compile(IText.既定様式IDパターン.pattern()))
+			.build());
+		String fastText = temp.newFile().getPath(), slowText = temp.newFile().getPath();
+		fast.テキスト変換(fastText, inFiles);
+		slow.テキスト変換(slowText, inFiles);
+		assertEquals(Files.readString(Path.of(slowText)), Files.readString(Path.of(fastText)));
+		String fastIndex = temp.newFile().getPath(), slowIndex = temp.newFile().getPath();
+		fast.様式一覧変換(fastIndex, inFiles);
+		slow.様式一覧変換(slowIndex, inFiles);
+		assertEquals(Files.readString(Path.of(slowIndex)), Files.readString(Path.of(fastIndex)));
+	}
+
+	/**
+	 * 様式見出し領域を指定した場合も、縦長と横長のページが混在する文書で
+	 * ページ全体を解析した様式一覧変換と同じ一覧になることを確認します。
+	 */
+	@Test
+	public void testHeaderBand() throws IOException {
+		String[] inFiles = {"0000196315-1-2.pdf", "0000196315-379-380.pdf"};
+		String expected = temp.newFile().getPath();
+		new IText(true).様式一覧変換(expected, inFiles);
+		assertTrue(Files.readString(Path.of(expected)).contains("様式23の2,23_2,2,2,"));
+		for (float band : new float[] {150F, 300F}) {
+			IText itext = new IText(抽出設定.builder(true).様式見出し領域(band).build());
+			String actual = temp.newFile().getPath();
+			itext.様式一覧変換(actual, inFiles);
+			assertEquals(Files.readString(Path.of(expected)), Files.readString(Path.of(actual)));
+		}
+		// 様式IDの次の行が領域外でも様式名を空として検出する
+		IText narrow = new IText(抽出設定.builder(true).様式見出し領域(100F).build());
+		String actual = temp.newFile().getPath();
+		narrow.様式一覧変換(actual, inFiles);
+		assertTrue(Files.readString(Path.of(actual)).contains("様式23の2,23_2,2,2,\n"));
+	}
+
 //	@Test
 	public void testMatcher() {
 		Pattern pat = Pattern.compile("^\\s*\\S*\\s*-\\s*\\d+\\s*-\\s*$");
@@ -19,6 +19,7 @@ import org.junit.Test;
 import com.google.gson.Gson;
 
 import saka1029.pdf.IText;
+import saka1029.pdf.抽出設定;
 
 /**
  * 平成30年、令和1年、令和2年、令和4年の
@@ -125,8 +126,7 @@ public class TestTensuhyo {
 	};
 
 	static void copy(boolean horizontal, String src, String... dests) throws IOException {
-	    IText itext = new IText(horizontal);
-	    itext.debugElement = DEBUG_ELEMENT;
+	    IText itext = new IText(抽出設定.builder(horizontal).debugElement(DEBUG_ELEMENT).build());
 	    itext.テキスト変換(src, dests);
 	}
 
@@ -111,7 +111,7 @@ public class TestYoshiki {
 	@Test
 	public void testYoshikiName() {
 	    IText it = new IText(false);
-	    OUT.println(it.様式IDパターン.matcher("様式 54 の７").matches());
+	    OUT.println(it.設定.様式IDパターン.matcher("様式 54 の７").matches());
 	}
 
 //	@Test
@@ -0,0 +1,99 @@
+package saka1029.pdf.itext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import saka1029.pdf.コーパス検査;
+import saka1029.pdf.コーパス検査.レポート;
+import saka1029.pdf.コーパス検査.文書結果;
+import saka1029.pdf.行差分;
+
+/**
+ * コーパス検査が正解との差分と処理時間の低下を検出することを確認します。
+ */
+public class Testコーパス検査 {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void test行差分() {
+		List<String> a = List.of("a", "b", "c", "d", "e"), b = List.of("a", "x", "c", "e", "f");
+		行差分 diff = 行差分.比較(a, b, 100);
+		assertFalse(diff.打切り);
+		assertEquals(2, diff.削除数());
+		assertEquals(2, diff.挿入数());
+		assertEquals(List.of("@@ -2,1 +2,1 @@", "-b", "+x", "@@ -4,1 +4,0 @@", "-d", "@@ -6,0 +5,1 @@", "+f"),
+			diff.unified(100));
+		assertTrue(行差分.比較(a, a, 0).一致());
+		行差分 over = 行差分.比較(a, b, 1);
+		assertTrue(over.打切り);
+		assertEquals(List.of("@@ -2,4 +2,4 @@", "-b", "-c", "-d", "-e"), over.unified(5));
+	}
+
+	@Test
+	public void testCorpus() throws IOException {
+		Path root = temp.getRoot().toPath();
+		Path in = Files.createDirectories(root.resolve("in/sub"));
+		Files.copy(Path.of("0000196315-1-2.pdf"), root.resolve("in/a.pdf"));
+		Files.copy(Path.of("0000196315-379-380.pdf"), in.resolve("b.pdf"));
+		Path golden = root.resolve("golden"), work = root.resolve("work");
+		コーパス検査 検査 = new コーパス検査(root.resolve("in"), golden, work);
+		検査.正解更新 = true;
+		レポート first = 検査.実行();
+		assertTrue(first.合格);
+		assertEquals(List.of("a.txt", "sub/b.txt"), first.文書.stream().map(r -> r.名前).toList());
+		assertEquals(List.of("更新", "更新"), first.文書.stream().map(r -> r.状態).toList());
+		assertEquals(4, first.ページ数);
+		文書結果 a = first.文書.get(0);
+		assertEquals(2, a.ページ数);
+		assertTrue(a.時間ミリ秒 > 0 && a.ページ毎秒 > 0 && a.最大ヒープ > 0);
+		Path reportFile = root.resolve("report.json");
+		コーパス検査.レポート保存(first, reportFile);
+
+		// 正解の1行を変更すると差分になる
+		Path goldenA = golden.resolve("a.txt");
+		List<String> lines = Files.readAllLines(goldenA, StandardCharsets.UTF_8);
+		String changed = lines.get(3);
+		lines.set(3, "変更");
+		Files.write(goldenA, lines, StandardCharsets.UTF_8);
+		検査.正解更新 = false;
+		検査.基準レポート = reportFile;
+		検査.許容低下率 = 1000;
+		レポート second = 検査.実行();
+		assertFalse(second.合格);
+		assertEquals(1, second.差分数);
+		assertEquals(0, second.低下数);
+		文書結果 diff = second.文書.get(0);
+		assertEquals("差分", diff.状態);
+		assertEquals(1, diff.削除行数);
+		assertEquals(1, diff.挿入行数);
+		assertEquals(List.of("@@ -4,1 +4,1 @@", "-変更\n", "+" + changed + "\n"), diff.差分);
+		assertEquals("一致", second.文書.get(1).状態);
+		assertEquals(a.時間ミリ秒, diff.基準時間ミリ秒, 0);
+
+		// 基準より遅い文書は低下になる
+		レポート baseline = コーパス検査.レポート読込(reportFile);
+		for (文書結果 r : baseline.文書)
+			r.時間ミリ秒 = 0.001;
+		コーパス検査.レポート保存(baseline, reportFile);
+		Files.delete(goldenA);
+		検査.許容低下率 = 0.1;
+		レポート third = 検査.実行();
+		assertEquals(0, third.差分数);
+		assertEquals(2, third.低下数);
+		assertEquals("正解なし", third.文書.get(0).状態);
+		assertFalse(third.合格);
+	}
+}
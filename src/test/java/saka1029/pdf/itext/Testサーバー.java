@@ -0,0 +1,162 @@
+package saka1029.pdf.itext;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import saka1029.pdf.IText;
+import saka1029.pdf.サーバー;
+
+/**
+ * サーバーが要求を並行して処理し、要求の順に応答することを確認します。
+ */
+public class Testサーバー {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	static final String 告示 = "0000196315-1-2.pdf", 様式 = "0000196315-379-380.pdf";
+
+	@Test
+	public void testProtocol() throws IOException {
+		Path root = temp.getRoot().toPath();
+		Path text = root.resolve("kokuji.txt"), index = root.resolve("yoshiki.txt");
+		String requests = String.join("\n",
+			"テキスト変換\t縦書き\t" + text + "\tkokuji.pdf",
+			"状態",
+			"様式一覧変換\t横書き\t" + index + "\t" + 様式,
+			"",
+			"不明\tx",
+			"終了",
+			"状態");
+		StringWriter response = new StringWriter();
+		try (サーバー server = new サーバー(2, 4)) {
+			server.接続(new BufferedReader(new StringReader(requests)), new PrintWriter(response));
+		}
+		List<String> lines = response.toString().lines().toList();
+		assertEquals(5, lines.size());
+		assertTrue(lines.get(0), lines.get(0).startsWith("OK\t"));
+		// 状態は最初の要求の終了を待たずに処理し、最初の要求の応答の後に応答する
+		assertTrue(lines.get(1), lines.get(1).startsWith("OK\t") && lines.get(1).contains("処理数=0"));
+		assertTrue(lines.get(2), lines.get(2).startsWith("OK\t"));
+		assertTrue(lines.get(3), lines.get(3).startsWith("ERROR\t") && lines.get(3).contains("不明な要求"));
+		assertEquals("OK\t0", lines.get(4));
+		Path expectedText = root.resolve("expectedText.txt"), expectedIndex = root.resolve("expectedIndex.txt");
+		new IText(false).テキスト変換(expectedText.toString(), "kokuji.pdf");
+		new IText(true).様式一覧変換(expectedIndex.toString(), 様式);
+		assertArrayEquals(Files.readAllBytes(expectedText), Files.readAllBytes(text));
+		assertArrayEquals(Files.readAllBytes(expectedIndex), Files.readAllBytes(index));
+	}
+
+	@Test
+	public void testSocket() throws Exception {
+		Path root = temp.getRoot().toPath();
+		Path socket = root.resolve("pdf.sock"), text = root.resolve("kokuji.txt");
+		try (サーバー server = new サーバー(1, 4)) {
+			Thread listener = new Thread(() -> {
+				try {
+					server.待受(socket);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			listener.start();
+			for (int i = 0; i < 100 && !Files.exists(socket); ++i)
+				Thread.sleep(50);
+			try (SocketChannel c = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+				c.connect(UnixDomainSocketAddress.of(socket));
+				PrintWriter out = new PrintWriter(Channels.newWriter(c, StandardCharsets.UTF_8));
+				BufferedReader in = new BufferedReader(Channels.newReader(c, StandardCharsets.UTF_8));
+				out.print("テキスト変換\t横書き\t" + text + "\t" + 告示 + "\n終了\n");
+				out.flush();
+				assertTrue(in.readLine().startsWith("OK\t"));
+				assertEquals("OK\t0", in.readLine());
+			}
+			listener.join(60_000);
+			assertFalse(listener.isAlive());
+			assertFalse(Files.exists(socket));
+		}
+		assertTrue(Files.size(text) > 0);
+	}
+
+	static int 状態値(String status, String name) {
+		Matcher m = Pattern.compile(name + "=(\\d+)").matcher(status);
+		assertTrue(status, m.find());
+		return Integer.parseInt(m.group(1));
+	}
+
+	/**
+	 * 別の接続が終了を要求しても、受け付け済みの要求はすべて処理して応答することを確認します。
+	 */
+	@Test
+	public void testShutdownWithPendingRequests() throws Exception {
+		Path root = temp.getRoot().toPath();
+		Path socket = root.resolve("pdf.sock");
+		UnixDomainSocketAddress address = UnixDomainSocketAddress.of(socket);
+		Path[] texts = {root.resolve("a.txt"), root.resolve("b.txt"), root.resolve("c.txt")};
+		try (サーバー server = new サーバー(1, 4)) {
+			Thread listener = new Thread(() -> {
+				try {
+					server.待受(socket);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			listener.start();
+			for (int i = 0; i < 100 && !Files.exists(socket); ++i)
+				Thread.sleep(50);
+			try (SocketChannel a = SocketChannel.open(address)) {
+				PrintWriter outA = new PrintWriter(Channels.newWriter(a, StandardCharsets.UTF_8));
+				BufferedReader inA = new BufferedReader(Channels.newReader(a, StandardCharsets.UTF_8));
+				outA.print("テキスト変換\t縦書き\t" + texts[0] + "\tkokuji.pdf\tkokuji.pdf\tkokuji.pdf\n");
+				outA.print("テキスト変換\t横書き\t" + texts[1] + "\t" + 告示 + "\n");
+				outA.print("テキスト変換\t横書き\t" + texts[2] + "\t" + 様式 + "\n");
+				outA.flush();
+				try (SocketChannel b = SocketChannel.open(address)) {
+					PrintWriter outB = new PrintWriter(Channels.newWriter(b, StandardCharsets.UTF_8));
+					BufferedReader inB = new BufferedReader(Channels.newReader(b, StandardCharsets.UTF_8));
+					// 接続Aの要求がすべてキューに入るまで待つ
+					String status;
+					do {
+						outB.print("状態\n");
+						outB.flush();
+						status = inB.readLine();
+					} while (状態値(status, "キュー") + 状態値(status, "処理中") + 状態値(status, "処理数") < 3);
+					assertTrue(status, 状態値(status, "処理数") < 3);
+					outB.print("終了\n");
+					outB.flush();
+					assertEquals("OK\t0", inB.readLine());
+				}
+				for (int i = 0; i < texts.length; ++i)
+					assertTrue(inA.readLine().startsWith("OK\t"));
+				assertNull(inA.readLine());
+			}
+			listener.join(60_000);
+			assertFalse(listener.isAlive());
+		}
+		for (Path text : texts)
+			assertTrue(Files.size(text) > 0);
+	}
+}
@@ -0,0 +1,92 @@
+package saka1029.pdf.itext;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import saka1029.pdf.IText;
+import saka1029.pdf.フォルダ監視;
+
+/**
+ * フォルダ監視が追加されたPDFファイルを書き込みが終わってから変換し、
+ * 変更のないファイルを変換しないことを確認します。
+ */
+public class Testフォルダ監視 {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	static final String 告示 = "0000196315-1-2.pdf", 様式 = "0000196315-379-380.pdf";
+
+	static void 待つ(フォルダ監視 監視, BooleanSupplier 条件) throws InterruptedException {
+		long end = System.currentTimeMillis() + 60_000;
+		while (!条件.getAsBoolean() && System.currentTimeMillis() < end)
+			Thread.sleep(50);
+		assertTrue(監視.待機(60_000));
+	}
+
+	フォルダ監視 監視(Path root) throws IOException {
+		フォルダ監視 監視 = new フォルダ監視(root.resolve("in"), root.resolve("out"), root.resolve("state.json"), 2);
+		監視.待機ミリ秒 = 300;
+		監視.様式パターン = Pattern.compile("yoshiki");
+		return 監視;
+	}
+
+	@Test
+	public void testWatch() throws Exception {
+		Path root = temp.getRoot().toPath();
+		Path in = Files.createDirectories(root.resolve("in")), out = root.resolve("out");
+		Files.copy(Path.of(告示), in.resolve("a.pdf"));
+		Path expected = root.resolve("expected.txt");
+		new IText(true).テキスト変換(expected.toString(), in.resolve("a.pdf").toString());
+		try (フォルダ監視 監視 = 監視(root)) {
+			監視.開始();
+			// 開始前からあるファイル
+			待つ(監視, () -> 監視.変換数.sum() == 1);
+			assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(out.resolve("a.txt")));
+			// 開始後に作成したディレクトリに少しずつ書き込んだファイル
+			Path sub = Files.createDirectories(in.resolve("sub"));
+			Thread.sleep(100);
+			byte[] bytes = Files.readAllBytes(Path.of(様式));
+			try (OutputStream os = Files.newOutputStream(sub.resolve("yoshiki.pdf"))) {
+				os.write(Arrays.copyOf(bytes, bytes.length / 2));
+				os.flush();
+				Thread.sleep(100);
+				os.write(bytes, bytes.length / 2, bytes.length - bytes.length / 2);
+			}
+			待つ(監視, () -> 監視.変換数.sum() == 2);
+			assertEquals(0, 監視.エラー数.sum());
+			assertTrue(Files.readString(out.resolve("sub/yoshiki.txt")).contains("yoshiki.pdf"));
+			try (Stream<Path> s = Files.list(out.resolve("sub/yoshiki"))) {
+				assertTrue(s.anyMatch(p -> p.getFileName().toString().startsWith("BESI")));
+			}
+			try (Stream<Path> s = Files.walk(out)) {
+				assertTrue(s.noneMatch(p -> p.getFileName().toString().endsWith(".tmp")));
+			}
+		}
+		// 再起動しても変更のないファイルは変換しない
+		try (フォルダ監視 監視 = 監視(root)) {
+			監視.開始();
+			待つ(監視, () -> 監視.省略数.sum() == 2);
+			assertEquals(0, 監視.変換数.sum());
+			Files.setLastModifiedTime(in.resolve("a.pdf"), FileTime.fromMillis(0));
+			待つ(監視, () -> 監視.変換数.sum() == 1);
+			assertEquals(2, 監視.省略数.sum());
+			assertEquals(0, 監視.エラー数.sum());
+		}
+	}
+}
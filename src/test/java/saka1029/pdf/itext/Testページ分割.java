@@ -0,0 +1,108 @@
+package saka1029.pdf.itext;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.pdf.PdfReader;
+
+import saka1029.pdf.IText;
+import saka1029.pdf.IText.分割オプション;
+import saka1029.pdf.様式;
+
+/**
+ * ページ分割の各モードと様式分割が同じページのPDFを書き出すことを確認します。
+ * PDFのトレーラー(IDや作成日時)は書き出すたびに変わるので、ページごとに比較します。
+ */
+public class Testページ分割 {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	static final String[] 入力 = {"0000196315-1-2.pdf", "0000196315-379-380.pdf"};
+
+	/**
+	 * ディレクトリ内のファイル名の一覧を返します。
+	 */
+	static List<String> 一覧(Path dir) throws IOException {
+		try (Stream<Path> s = Files.list(dir)) {
+			return s.map(p -> p.getFileName().toString()).sorted().toList();
+		}
+	}
+
+	/**
+	 * 2つのPDFのページ数と各ページの大きさ、内容が同じことを確認します。
+	 */
+	static void 同じページ(Path expected, Path actual) throws IOException {
+		PdfReader e = new PdfReader(expected.toString()), a = new PdfReader(actual.toString());
+		try {
+			assertEquals(actual.toString(), e.getNumberOfPages(), a.getNumberOfPages());
+			for (int i = 1, n = e.getNumberOfPages(); i <= n; ++i) {
+				assertEquals(e.getPageSizeWithRotation(i).toString(), a.getPageSizeWithRotation(i).toString());
+				assertArrayEquals(actual + ":" + i, e.getPageContent(i), a.getPageContent(i));
+			}
+		} finally {
+			e.close();
+			a.close();
+		}
+	}
+
+	/**
+	 * 2つのディレクトリに同じ名前のPDFがあり、それぞれ同じページであることを確認します。
+	 */
+	static void 同じ分割(Path expected, Path actual) throws IOException {
+		List<String> names = 一覧(expected);
+		assertEquals(names, 一覧(actual));
+		for (String name : names)
+			同じページ(expected.resolve(name), actual.resolve(name));
+	}
+
+	Path 分割(String index, String name, 分割オプション option) throws IOException, DocumentException {
+		Path dir = temp.newFolder(name).toPath();
+		List<様式> forms = IText.ページ分割(index, dir.toString(), dir + "/BESI", option);
+		assertEquals(forms.size(), 一覧(dir).size());
+		return dir;
+	}
+
+	@Test
+	public void testParallelSplit() throws IOException, DocumentException {
+		String index = temp.newFile().getPath();
+		new IText(true).様式一覧変換(index, 入力);
+		Path sequential = 分割(index, "sequential", 分割オプション.既定);
+		assertEquals(List.of("BESI23.pdf", "BESI23_2.pdf"), 一覧(sequential));
+		同じ分割(sequential, 分割(index, "parallel", new 分割オプション(false, 2, false)));
+		同じ分割(sequential, 分割(index, "partial", new 分割オプション(true, 2, false)));
+		同じ分割(sequential, 分割(index, "smart", new 分割オプション(false, 1, true)));
+		同じ分割(sequential, 分割(index, "smartParallel", new 分割オプション(true, 2, true)));
+	}
+
+	/**
+	 * 様式分割が様式一覧変換とページ分割を順に実行した場合と
+	 * 同じ一覧、同じ様式一覧ファイル、同じページのPDFを出力することを確認します。
+	 */
+	@Test
+	public void testFusedSplit() throws IOException, DocumentException {
+		String index = temp.newFile().getPath();
+		new IText(true).様式一覧変換(index, 入力);
+		Path twoStep = temp.newFolder("twoStep").toPath();
+		List<様式> expected = IText.ページ分割(index, twoStep.toString(), twoStep + "/BESI");
+		for (分割オプション option : List.of(分割オプション.既定, new 分割オプション(false, 2, false))) {
+			Path fused = temp.newFolder().toPath();
+			String fusedIndex = temp.newFile().getPath();
+			List<様式> actual = new IText(true).様式分割(fusedIndex, fused + "/BESI", option, 入力);
+			assertEquals(expected.toString(), actual.toString());
+			assertEquals(Files.readString(Path.of(index)), Files.readString(Path.of(fusedIndex)));
+			同じ分割(twoStep, fused);
+		}
+	}
+}
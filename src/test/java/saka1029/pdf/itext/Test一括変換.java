@@ -0,0 +1,68 @@
+package saka1029.pdf.itext;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import saka1029.pdf.IText;
+import saka1029.pdf.一括変換;
+import saka1029.pdf.一括変換.結果;
+import saka1029.pdf.抽出設定;
+
+/**
+ * 一括変換が変更のない変換を省略し、変更した入力に依存する変換だけを実行することを確認します。
+ */
+public class Test一括変換 {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	static final String 告示 = "0000196315-1-2.pdf", 様式 = "0000196315-379-380.pdf";
+
+	static void 確認(結果 r, int 実行数, int 省略数) {
+		assertTrue(r.失敗().toString(), r.失敗().isEmpty());
+		assertEquals(実行数, r.実行数());
+		assertEquals(省略数, r.省略数());
+	}
+
+	@Test
+	public void testIncremental() throws IOException {
+		Path root = temp.getRoot().toPath();
+		Path pdfDir = Files.createDirectories(root.resolve("in/r0404/i/pdf"));
+		Files.copy(Path.of(告示), pdfDir.resolve(告示));
+		Files.copy(Path.of(様式), pdfDir.resolve(様式));
+		Path json = root.resolve("r0404.json");
+		Files.writeString(json, """
+			{"元号": "令和", "年度": "r0404", "医科告示PDF": ["%s"], "医科様式PDF": ["%s"]}
+			""".formatted(告示, 様式), StandardCharsets.UTF_8);
+		Path out = root.resolve("out");
+		一括変換 batch = new 一括変換(root.resolve("in"), out, root.resolve("state.json"));
+		batch.並列度 = 2;
+		確認(batch.実行(json), 3, 0);
+		Path expected = root.resolve("expected.txt");
+		new IText(true).テキスト変換(expected.toString(), pdfDir.resolve(告示).toString());
+		assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(out.resolve("r0404-i-kokuji.txt")));
+		assertTrue(Files.isDirectory(out.resolve("r0404-i-yoshiki")));
+		// 変更がなければすべて省略する
+		確認(new 一括変換(root.resolve("in"), out, root.resolve("state.json")).実行(json), 0, 3);
+		// 様式のPDFを更新すると様式一覧変換とページ分割だけを実行する
+		Files.setLastModifiedTime(pdfDir.resolve(様式), FileTime.fromMillis(0));
+		確認(batch.実行(json), 2, 1);
+		// 出力ファイルがなければ実行する
+		Files.delete(out.resolve("r0404-i-kokuji.txt"));
+		確認(batch.実行(json), 1, 2);
+		// オプションを変更すると様式一覧変換に依存するページ分割も実行する
+		batch.横書き = new IText(抽出設定.builder(true).改行文字("\r\n").build());
+		確認(batch.実行(json), 3, 0);
+	}
+}
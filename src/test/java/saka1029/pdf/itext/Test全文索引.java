@@ -0,0 +1,108 @@
+package saka1029.pdf.itext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import saka1029.pdf.IText;
+import saka1029.pdf.全文索引;
+import saka1029.pdf.抽出設定;
+import saka1029.pdf.全文索引.検索結果;
+
+/**
+ * 全文索引の検索結果がread()の行を順に調べた結果と同じことを確認します。
+ */
+public class Test全文索引 {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	static List<検索結果> 走査(IText itext, String query, String... pdfs) throws IOException {
+		List<検索結果> result = new ArrayList<>();
+		for (String pdf : pdfs)
+			itext.read(pdf, (pageNo, lines) -> {
+				for (int j = 0; j < lines.size(); ++j)
+					if (lines.get(j).contains(query))
+						result.add(new 検索結果(pdf, pageNo, j + 1, lines.get(j)));
+			});
+		return result;
+	}
+
+	@Test
+	public void testSearch() throws IOException {
+		String[] pdfs = {"0000196315-1-2.pdf", "0000196315-379-380.pdf"};
+		IText itext = new IText(true);
+		Path pdf = temp.getRoot().toPath().resolve("copy.pdf");
+		try (全文索引 index = new 全文索引(temp.newFolder().toPath(), itext)) {
+			assertEquals(2, index.更新(pdfs));
+			for (String query : List.of("様式", "別添６の様式", "医", "算定", "存在しない文字列"))
+				assertEquals(走査(itext, query, pdfs), index.検索(query));
+			assertTrue(index.検索("様式").size() > 0);
+			// 変更のないファイルは作り直さない
+			assertEquals(0, index.更新(pdfs));
+			// 1つのファイルだけを作り直す
+			Files.copy(Path.of(pdfs[0]), pdf);
+			assertEquals(1, index.更新(pdf.toString()));
+			Files.copy(Path.of(pdfs[1]), pdf, StandardCopyOption.REPLACE_EXISTING);
+			Files.setLastModifiedTime(pdf, FileTime.fromMillis(0));
+			assertEquals(1, index.更新(pdf.toString()));
+			assertEquals(0, index.更新(pdfs));
+			List<検索結果> copy = index.検索("様式").stream().filter(r -> r.file().equals(pdf.toString())).toList();
+			assertEquals(走査(itext, "様式", pdf.toString()), copy);
+			index.削除(pdf.toString());
+			assertEquals(走査(itext, "様式", pdfs), index.検索("様式"));
+		}
+	}
+
+	static long 区分ファイル数(Path dir) throws IOException {
+		try (Stream<Path> s = Files.list(dir)) {
+			return s.filter(p -> p.getFileName().toString().endsWith(".idx")).count();
+		}
+	}
+
+	/**
+	 * 抽出する行に影響するオプションを変更すると区分を新しい世代で作り直し、
+	 * 古い世代の区分ファイルを削除することを確認します。
+	 */
+	@Test
+	public void testOptionChange() throws IOException {
+		String[] pdfs = {"0000196315-1-2.pdf", "0000196315-379-380.pdf"};
+		List<IText> itexts = List.of(
+			new IText(true),
+			new IText(抽出設定.builder(true).標本ページ数(1).build()),
+			new IText(抽出設定.builder(true).標本ページ数(1)
+				.文書属性テンプレート(new IText.文書属性(true, 50F, 14F, 10F, 6F, 6F)).build()));
+		Path dir = temp.newFolder().toPath();
+		List<全文索引> indexes = new ArrayList<>();
+		try {
+			// 前のオプションの索引は区分をマップしたまま開いておく
+			for (IText itext : itexts) {
+				全文索引 index = new 全文索引(dir, itext);
+				indexes.add(index);
+				assertEquals(2, index.更新(pdfs));
+				assertEquals(0, index.更新(pdfs));
+				assertEquals(走査(itext, "様式", pdfs), index.検索("様式"));
+			}
+			assertEquals(2, 区分ファイル数(dir));
+			全文索引 index = indexes.get(indexes.size() - 1);
+			index.削除(pdfs[0]);
+			assertEquals(1, 区分ファイル数(dir));
+			assertEquals(走査(index.itext, "様式", pdfs[1]), index.検索("様式"));
+		} finally {
+			for (全文索引 index : indexes)
+				index.close();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package saka1029.pdf.itext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import saka1029.pdf.IText;
+import saka1029.pdf.ページキャッシュ;
+import saka1029.pdf.共有IText;
+import saka1029.pdf.抽出器;
+import saka1029.pdf.抽出設定;
+import saka1029.pdf.計測;
+
+/**
+ * 1つの共有ITextを複数のスレッドから同時に呼び出しても、
+ * スレッドごとのITextと同じ結果になることを確認します。
+ */
+public class Test共有IText {
+
+	static final List<String> 入力 = List.of("kokuji.pdf", "0000196315-1-2.pdf", "0000196315-379-380.pdf");
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	/**
+	 * すべてのオプションを既定値と異なる値にした抽出設定を
+	 * toBuilder()で同じ値のままコピーできることを確認します。
+	 * オプションを追加してBuilderでのコピーを忘れた場合や、
+	 * ここで既定値と異なる値を指定し忘れた場合は失敗します。
+	 */
+	@Test
+	public void test設定() throws IOException, IllegalAccessException {
+		抽出設定 既定 = 抽出設定.既定(true);
+		抽出設定 設定 = 抽出設定.builder(true)
+			.horizontal(false)
+			.改行文字("\r\n")
+			.出力文字セット(Charset.forName("Shift_JIS"))
+			.行併合範囲割合(0.5F)
+			.ルビ割合(0.5F)
+			.行高さ規定値(11F)
+			.行間隔規定値(15F)
+			.ゼロ幅左シフト(7F)
+			.ルビパターン(Pattern.compile("\\p{IsHiragana}+"))
+			.ページ番号パターン(Pattern.compile("^-\\d+-$"))
+			.debugElement((path, pageNo, lineNo, attr, elements) -> {})
+			.並列度(2)
+			.部分読込(true)
+			.キャッシュ(new ページキャッシュ(temp.getRoot().toPath(), 1L << 20))
+			.グリフ結合(true)
+			.計測(new 計測.集計())
+			.抽出方式(抽出器.PDFBOX)
+			.文書属性テンプレート(new IText.文書属性(true, 50F, 14F, 10F, 6F, 6F))
+			.標本ページ数(3)
+			.二段階解析(true)
+			.ファイル並列度(2)
+			.様式名出現最大行(4)
+			.様式IDパターン(Pattern.compile("様式(\\d+)"))
+			.様式見出し領域(100F)
+			.build();
+		抽出設定 copy = 設定.toBuilder().build();
+		for (Field f : 抽出設定.class.getFields()) {
+			assertNotEquals(f.getName(), f.get(既定), f.get(設定));
+			assertEquals(f.getName(), f.get(設定), f.get(copy));
+		}
+		assertEquals(設定.toString(), copy.toString());
+		assertSame(設定, new IText(設定).設定);
+	}
+
+	@Test
+	public void testConcurrentRead() throws Exception {
+		Map<String, List<List<String>>> expected = new HashMap<>();
+		for (String path : 入力)
+			expected.put(path, new IText(true).read(path));
+		計測.集計 集計 = new 計測.集計();
+		共有IText shared = new 共有IText(抽出設定.builder(true)
+			.ルビパターン(Pattern.compile(IText.既定ルビパターン.pattern()))
+			.計測(集計)
+			.build());
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<List<String>>>> futures = new ArrayList<>();
+			List<String> paths = new ArrayList<>();
+			for (int i = 0; i < 4; ++i)
+				for (String path : 入力) {
+					paths.add(path);
+					futures.add(executor.submit(() -> shared.read(path)));
+				}
+			for (int i = 0; i < futures.size(); ++i)
+				assertEquals(expected.get(paths.get(i)), futures.get(i).get());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(4 * 入力.size(), 集計.文書数.sum());
+	}
+}
@@ -0,0 +1,86 @@
+package saka1029.pdf.itext;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import saka1029.pdf.IText;
+import saka1029.pdf.文書キャッシュ;
+import saka1029.pdf.抽出設定;
+
+/**
+ * 文書キャッシュとページ範囲の読み込みが全体を読み込んだ結果と同じで、
+ * 必要なページだけを解析することを確認します。
+ */
+public class Test文書キャッシュ {
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	@Test
+	public void testRange() throws IOException {
+		String path = "0000196315-1-2.pdf";
+		IText itext = new IText(true);
+		List<List<String>> all = itext.read(path);
+		assertEquals(all, itext.read(path, 1, 100));
+		assertEquals(all.subList(1, 2), itext.read(path, 2, 2));
+		try (文書キャッシュ cache = new 文書キャッシュ(itext, 2, 10)) {
+			assertEquals(all.get(1), cache.page(path, 2));
+			assertEquals(all, cache.read(path, 1, 2));
+			// 文書属性を求めるために2ページを解析し、2ページ目はそのときの解析結果を使う
+			assertEquals(3, cache.解析数.sum());
+			cache.read(path, 1, 2);
+			assertEquals(3, cache.解析数.sum());
+		}
+	}
+
+	@Test
+	public void testRandomAccess() throws IOException {
+		String path = "kokuji.pdf";
+		IText itext = new IText(抽出設定.builder(false).標本ページ数(3).build());
+		List<List<String>> expected = new ArrayList<>();
+		itext.read(path, (pageNo, lines) -> {
+			if (pageNo == 200 || pageNo == 201)
+				expected.add(lines);
+		});
+		assertEquals(expected, itext.read(path, 200, 201));
+		try (文書キャッシュ cache = new 文書キャッシュ(itext, 2, 10)) {
+			文書キャッシュ.文書 doc = cache.文書(path);
+			assertEquals(247, doc.ページ数());
+			assertEquals(expected.get(0), doc.page(200));
+			// 標本の3ページと200ページ
+			assertEquals(4, cache.解析数.sum());
+			assertEquals(expected.get(1), doc.page(201));
+			assertEquals(expected.get(0), doc.page(200));
+			assertEquals(5, cache.解析数.sum());
+		}
+	}
+
+	@Test
+	public void testChangedFile() throws IOException {
+		IText itext = new IText(true);
+		String[] pdfs = {"0000196315-1-2.pdf", "0000196315-379-380.pdf"};
+		Path pdf = temp.getRoot().toPath().resolve("copy.pdf");
+		try (文書キャッシュ cache = new 文書キャッシュ(itext, 1, 10)) {
+			Files.copy(Path.of(pdfs[0]), pdf);
+			文書キャッシュ.文書 doc = cache.文書(pdf.toString());
+			assertEquals(itext.read(pdfs[0]).get(0), doc.page(1));
+			// 最大文書数を超えて閉じた文書は開き直す
+			cache.page(pdfs[1], 1);
+			assertEquals(itext.read(pdfs[0]).get(1), doc.page(2));
+			Files.copy(Path.of(pdfs[1]), pdf, StandardCopyOption.REPLACE_EXISTING);
+			Files.setLastModifiedTime(pdf, FileTime.fromMillis(0));
+			assertEquals(itext.read(pdfs[1]).get(0), cache.page(pdf.toString(), 1));
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package saka1029.pdf.itext;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+import saka1029.pdf.文書統計;
+import saka1029.pdf.要素表;
+
+/**
+ * 文書統計がMapで度数を数える単純な実装と
+ * 同じ値(同数の場合は最初に現れた値)を返すことを確認します。
+ */
+public class Test文書統計 {
+
+	static 要素表 page(Random random) {
+		要素表 page = new 要素表();
+		for (int i = 0, size = random.nextInt(60); i < size; ++i)
+			page.add(random.nextInt(500), random.nextInt(40) * 7 + random.nextInt(3),
+				random.nextInt(15), random.nextInt(12), "あいう".substring(random.nextInt(3)));
+		page.行分割();
+		return page;
+	}
+
+	static float max(Map<Float, Integer> map, float defaultValue) {
+		return map.entrySet().stream()
+			.max(Entry.comparingByValue())
+			.map(Entry::getKey)
+			.orElse(defaultValue);
+	}
+
+	/**
+	 * 値を現れた順に保持するMapで行間隔と行高さを求めます。
+	 * Stream.max()は同数の場合に最初の要素を返します。
+	 */
+	static float[] reference(List<要素表> pages) {
+		float 左余白 = Float.MAX_VALUE;
+		Map<Float, Integer> 行間隔度数分布 = new LinkedHashMap<>();
+		Map<Float, Integer> 行高さ度数分布 = new LinkedHashMap<>();
+		for (要素表 page : pages) {
+			float prevY = Float.MIN_VALUE;
+			int[] line = new int[page.size()];
+			for (int k = 0; k < page.行数(); ++k) {
+				int n = page.行要素(k, line, 0);
+				左余白 = Math.min(左余白, page.x(line[0]));
+				float y = page.行y(k);
+				if (prevY != Float.MIN_VALUE)
+					行間隔度数分布.compute(y - prevY, (key, v) -> v == null ? 1 : v + 1);
+				prevY = y;
+				for (int i = 0; i < n; ++i) {
+					int length = page.文字数(line[i]);
+					行高さ度数分布.compute(page.h(line[i]), (key, v) -> (v == null ? 0 : v) + length);
+				}
+			}
+		}
+		return new float[] {左余白 == Float.MAX_VALUE ? 0 : 左余白, max(行間隔度数分布, -1), max(行高さ度数分布, -1)};
+	}
+
+	@Test
+	public void testSameAsMap() {
+		Random random = new Random(1);
+		for (int t = 0; t < 500; ++t) {
+			List<要素表> pages = new ArrayList<>();
+			for (int p = 0, size = random.nextInt(6); p < size; ++p)
+				pages.add(page(random));
+			float[] expected = reference(pages);
+			文書統計 whole = new 文書統計();
+			文書統計 merged = new 文書統計();
+			for (要素表 page : pages) {
+				whole.add(page);
+				文書統計 part = new 文書統計();
+				part.add(page);
+				merged.merge(part);
+			}
+			for (文書統計 s : new 文書統計[] {whole, merged}) {
+				assertEquals(expected[0], s.左余白(), 0F);
+				assertEquals(expected[1], s.行間隔(-1), 0F);
+				assertEquals(expected[2], s.行高さ(-1), 0F);
+			}
+		}
+	}
+}